@@ -0,0 +1,45 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.model.User;
+import com.kaizen.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ログイン処理（利用者の検索と BCrypt 照合）の計測。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+
+    @Param("10000")
+    private int caseCount;
+
+    private AuthService authService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        authService = BenchmarkEnvironment.get(caseCount).getBean(AuthService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkEnvironment.shutdown();
+    }
+
+    @Benchmark
+    public User login() {
+        return authService.login(BenchmarkEnvironment.USERNAME, BenchmarkEnvironment.PASSWORD);
+    }
+
+    @Benchmark
+    public User loginWrongPassword() {
+        return authService.login(BenchmarkEnvironment.USERNAME, "wrong_password");
+    }
+}
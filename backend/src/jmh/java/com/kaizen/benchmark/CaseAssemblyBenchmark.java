@@ -0,0 +1,125 @@
+package com.kaizen.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.kaizen.dto.CaseResponse;
+import com.kaizen.dto.CaseRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBを使わない組み立て処理の計測。レコードDTOと、以前の caseToMap 相当の
+ * HashMap 組み立てを比較する（-prof gc で割り当て量も比較できる）。
+ * legacySortInMemory は全件を読み込んでから並べ替えていた以前の一覧処理の基準値。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CaseAssemblyBenchmark {
+
+    @Param({"20", "100", "10000"})
+    private int rowCount;
+
+    private List<CaseRow> rows;
+    private List<List<String>> images;
+    private List<List<String>> thumbnails;
+    private List<CaseResponse> responses;
+    private List<Map<String, Object>> maps;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        rows = new ArrayList<>(rowCount);
+        images = new ArrayList<>(rowCount);
+        thumbnails = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            long id = i + 1;
+            rows.add(new CaseRow(id, "改善事例 " + id, "作業手順を見直し、治具を共通化して段取り時間を短縮した。".repeat(1 + i % 8),
+                1L + i % 2, "第一工場", 1L + i % 4, "製造係", 1L + i % 100, "bench_user_" + i,
+                (i * 7919) % 5000, (i * 104729) % 300, i % 25, now.minusMinutes(i * 13L), now.minusMinutes(i * 13L)));
+            List<String> full = new ArrayList<>();
+            List<String> small = new ArrayList<>();
+            for (int o = 0; o < 3; o++) {
+                full.add("/uploads/" + id + "-" + o + ".jpg");
+                small.add("/uploads/" + id + "-" + o + "_t.jpg");
+            }
+            images.add(full);
+            thumbnails.add(small);
+        }
+        // アプリケーションの ObjectMapper と同じ設定
+        objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new BlackbirdModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        responses = recordDtos();
+        maps = legacyMaps();
+    }
+
+    @Benchmark
+    public List<CaseResponse> recordDtos() {
+        List<CaseResponse> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            result.add(CaseResponse.of(rows.get(i), images.get(i), thumbnails.get(i)));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> legacyMaps() {
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            CaseRow row = rows.get(i);
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", row.id());
+            map.put("title", row.title());
+            map.put("description", row.description());
+            map.put("factoryId", row.factoryId());
+            map.put("factoryName", row.factoryName());
+            map.put("departmentId", row.departmentId());
+            map.put("departmentName", row.departmentName());
+            map.put("userId", row.userId());
+            map.put("username", row.username());
+            map.put("viewCount", row.viewCount());
+            map.put("likeCount", row.likeCount());
+            map.put("commentCount", row.commentCount());
+            map.put("createdAt", row.createdAt());
+            map.put("updatedAt", row.updatedAt());
+            map.put("images", new ArrayList<>(images.get(i)));
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<CaseRow> legacySortInMemory() {
+        List<CaseRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(CaseRow::likeCount).reversed());
+        return sorted;
+    }
+
+    @Benchmark
+    public byte[] serializeRecords() throws IOException {
+        return objectMapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] serializeMaps() throws IOException {
+        return objectMapper.writeValueAsBytes(maps);
+    }
+}
@@ -0,0 +1,95 @@
+package com.kaizen.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaizen.controller.CaseController;
+import com.kaizen.dto.CaseResponse;
+import com.kaizen.repository.CaseSort;
+import com.kaizen.service.CaseStreamService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一覧APIの計測。ページ取得（SQL側のキーセット並び替え＋DTO組み立て）、変更がない場合の再取得（304）、
+ * キーワード検索、レスポンスのJSON直列化、全件ストリーミングを対象にする。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CaseListBenchmark {
+
+    @Param("10000")
+    private int caseCount;
+
+    @Param({"date", "likes", "views"})
+    private String sortBy;
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private CaseController caseController;
+    private CaseStreamService caseStreamService;
+    private ObjectMapper objectMapper;
+    private List<CaseResponse> page;
+    private String pageEtag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment environment = BenchmarkEnvironment.get(caseCount);
+        caseController = environment.getBean(CaseController.class);
+        caseStreamService = environment.getBean(CaseStreamService.class);
+        objectMapper = environment.getBean(ObjectMapper.class);
+        ServletWebRequest request = request();
+        page = caseController.getAllCases(null, null, null, sortBy, null, pageSize, request).getBody();
+        pageEtag = request.getResponse().getHeader("ETag");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkEnvironment.shutdown();
+    }
+
+    @Benchmark
+    public ResponseEntity<List<CaseResponse>> firstPage() {
+        return caseController.getAllCases(null, null, null, sortBy, null, pageSize, request());
+    }
+
+    @Benchmark
+    public ResponseEntity<List<CaseResponse>> notModifiedPage() {
+        ServletWebRequest request = request();
+        ((MockHttpServletRequest) request.getRequest()).addHeader("If-None-Match", pageEtag);
+        return caseController.getAllCases(null, null, null, sortBy, null, pageSize, request);
+    }
+
+    @Benchmark
+    public ResponseEntity<List<CaseResponse>> keywordSearch() {
+        return caseController.getAllCases(null, null, "段取り", sortBy, null, pageSize, request());
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void streamAll() throws IOException {
+        caseStreamService.writeCases(OutputStream.nullOutputStream(), null, null, null, CaseSort.fromParam(sortBy));
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/cases"), new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,106 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.storage.FileStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * アップロード画像の配信の計測。FileController（ETag・304・Range・sendfile）と、
+ * 以前の UrlResource を返す実装（LegacyFileController）に同じファイルを HTTP で要求して比較する。
+ * サムネイル相当（sendfile の閾値未満）と写真相当（閾値以上）の2つのサイズで計測する。
+ * 以前の実装は ETag を返さないため、条件付きの再取得でも毎回全体を返す（legacyRevalidate）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 4)
+@Measurement(iterations = 5, time = 4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileServingBenchmark {
+
+    private static final String RANGE = "bytes=1024-9215";
+
+    @Param("1000")
+    private int caseCount;
+
+    @Param({"24576", "4194304"})
+    private int fileSize;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private FileStore fileStore;
+    private String path;
+    private URI current;
+    private URI legacy;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment environment = BenchmarkEnvironment.get(caseCount, LegacyFileController.class);
+        fileStore = environment.getBean(FileStore.class);
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        path = fileStore.store(".jpg", out -> out.write(content));
+
+        String baseUrl = "http://localhost:" + environment.getPort();
+        current = URI.create(baseUrl + path);
+        legacy = URI.create(baseUrl + LegacyFileController.legacyPath(path));
+        HttpResponse<Void> response = send(HttpRequest.newBuilder(current).build(), 200);
+        etag = response.headers().firstValue("ETag").orElseThrow();
+        send(HttpRequest.newBuilder(legacy).build(), 200);
+        send(HttpRequest.newBuilder(current).header("If-None-Match", etag).build(), 304);
+        send(HttpRequest.newBuilder(current).header("Range", RANGE).build(), 206);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileStore.release(List.of(path));
+        BenchmarkEnvironment.shutdown();
+    }
+
+    @Benchmark
+    public int full() throws Exception {
+        return send(HttpRequest.newBuilder(current).build(), 200).statusCode();
+    }
+
+    @Benchmark
+    public int legacyFull() throws Exception {
+        return send(HttpRequest.newBuilder(legacy).build(), 200).statusCode();
+    }
+
+    @Benchmark
+    public int range() throws Exception {
+        return send(HttpRequest.newBuilder(current).header("Range", RANGE).build(), 206).statusCode();
+    }
+
+    @Benchmark
+    public int legacyRange() throws Exception {
+        return client.send(HttpRequest.newBuilder(legacy).header("Range", RANGE).build(),
+            HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int notModified() throws Exception {
+        return send(HttpRequest.newBuilder(current).header("If-None-Match", etag).build(), 304).statusCode();
+    }
+
+    @Benchmark
+    public int legacyRevalidate() throws Exception {
+        return send(HttpRequest.newBuilder(legacy).header("If-None-Match", etag).build(), 200).statusCode();
+    }
+
+    private HttpResponse<Void> send(HttpRequest request, int expectedStatus) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response;
+    }
+}
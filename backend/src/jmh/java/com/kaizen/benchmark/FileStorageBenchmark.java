@@ -0,0 +1,130 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.service.FileStorageService;
+import com.kaizen.storage.FileStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * アップロード画像の保存処理の計測。スマートフォン写真相当（約5MBのJPEG）を
+ * そのまま保存する storeFile と、派生サイズを生成する storeImage を比較する。
+ * duplicate=true は同じ写真の再アップロード（内容アドレスでの重複排除）を計測する。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileStorageBenchmark {
+
+    private static final int WIDTH = 4032;
+    private static final int HEIGHT = 3024;
+
+    @Param("10000")
+    private int caseCount;
+
+    @Param({"false", "true"})
+    private boolean duplicate;
+
+    private FileStorageService fileStorageService;
+    private FileStore fileStore;
+    private byte[] jpeg;
+    private MockMultipartFile image;
+    private final Random random = new Random(42);
+    private final List<String> storedFiles = new ArrayList<>();
+    private final List<FileStorageService.StoredImage> storedImages = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment environment = BenchmarkEnvironment.get(caseCount);
+        fileStorageService = environment.getBean(FileStorageService.class);
+        fileStore = environment.getBean(FileStore.class);
+        jpeg = createJpeg();
+        image = new MockMultipartFile("images", "photo.jpg", "image/jpeg", jpeg);
+    }
+
+    /**
+     * 重複なしの場合は毎回内容を変える（JPEGの終端の後ろに乱数を付けても画像としては同じに読める）。
+     */
+    @Setup(Level.Invocation)
+    public void nextImage() {
+        if (!duplicate) {
+            byte[] bytes = Arrays.copyOf(jpeg, jpeg.length + 8);
+            for (int i = jpeg.length; i < bytes.length; i++) {
+                bytes[i] = (byte) random.nextInt();
+            }
+            image = new MockMultipartFile("images", "photo.jpg", "image/jpeg", bytes);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() throws IOException {
+        fileStore.release(storedFiles);
+        fileStorageService.delete(storedImages);
+        storedFiles.clear();
+        storedImages.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkEnvironment.shutdown();
+    }
+
+    @Benchmark
+    public String storeFile() throws IOException {
+        String path = fileStorageService.storeFile(image);
+        storedFiles.add(path);
+        return path;
+    }
+
+    @Benchmark
+    public FileStorageService.StoredImage storeImage() throws IOException {
+        FileStorageService.StoredImage stored = fileStorageService.storeImage(image);
+        storedImages.add(stored);
+        return stored;
+    }
+
+    /**
+     * 12MP のJPEGを生成する。緩やかなグラデーションにノイズを重ね、実写真に近い約5MBにする。
+     */
+    private static byte[] createJpeg() throws IOException {
+        BufferedImage source = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = (x * 255 / WIDTH + random.nextInt(48)) & 0xFF;
+                int g = (y * 255 / HEIGHT + random.nextInt(48)) & 0xFF;
+                int b = ((x + y) * 255 / (WIDTH + HEIGHT) + random.nextInt(48)) & 0xFF;
+                source.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.9f);
+            writer.write(null, new IIOImage(source, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
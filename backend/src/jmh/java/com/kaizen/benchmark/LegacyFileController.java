@@ -0,0 +1,63 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.storage.FileStore;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 比較用に残した以前の画像配信。ファイルを UrlResource で包んで ResponseEntity で返す
+ * （ETag・Last-Modified・304・sendfile はない）。内容アドレスの ab/cd/&lt;hash&gt; 形式も読めるよう、
+ * パスは {filename} ではなく URL_PREFIX 以降をそのまま使う。
+ */
+@RestController
+public class LegacyFileController {
+
+    public static final String URL_PREFIX = "/legacy-uploads/";
+
+    @Value("${file.upload.dir}")
+    private String uploadDir;
+
+    @GetMapping(URL_PREFIX + "**")
+    public ResponseEntity<Resource> getFile(HttpServletRequest request) {
+        String filename = request.getRequestURI().substring(URL_PREFIX.length());
+        try {
+            Path filePath = Paths.get(uploadDir).resolve(filename);
+            Resource resource = new UrlResource(filePath.toUri());
+
+            if (resource.exists() && resource.isReadable()) {
+                String contentType = "image/jpeg";
+                String fileExtension = filename.toLowerCase();
+                if (fileExtension.endsWith(".png")) {
+                    contentType = "image/png";
+                } else if (fileExtension.endsWith(".gif")) {
+                    contentType = "image/gif";
+                }
+
+                return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(contentType))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
+                    .body(resource);
+            }
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * FileStore の公開パスを、このコントローラーで配信するパスに読み替える。
+     */
+    public static String legacyPath(String path) {
+        return URL_PREFIX + path.substring(FileStore.URL_PREFIX.length());
+    }
+}
@@ -0,0 +1,505 @@
+package com.kaizen.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 現場の利用を想定した負荷試験。埋め込みPostgreSQLに事例を投入してアプリケーションを起動し、
+ * 一覧・詳細・いいね・コメント・検索・投稿・ログインを指定の比率で並行に送り続ける。
+ * 開始前に全利用者でログインし、詳細以降の操作はアクセストークンを付けて送る。
+ * 同時実行数を段階的に上げ、操作ごとのスループットとレイテンシ（p50/p95/p99）、
+ * エンドポイントごとのSQL実行回数を出力する。
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@loadtest -Dloadtest.args="--workers=10,50,100 --duration=60"
+ * </pre>
+ *
+ * オプション（既定値）:
+ * --cases=10000 --workers=10,25,50,100 --warmup=10 --duration=30
+ * --mix=list:40,detail:30,search:10,like:10,comment:8,upload:2 --output=target/loadtest-result.json
+ * --virtual-threads=true（false でTomcatの通常のスレッドプールと比較する）
+ * --replicas=0（1 以上でストリーミングレプリカを起動し、読み取りをレプリカに振り分ける）
+ *
+ * 始業時のログイン集中は --mix=login:100 で再現する。BCrypt の照合待ちがあふれて 503 で
+ * 断られたリクエストは errors ではなく rejected に数え、Retry-After の間を置いて次の操作に移る。
+ *
+ * refresh は掲示用端末の定期更新で、前回の ETag を If-None-Match に付けて一覧の先頭ページを読み直す
+ * （304 も成功に数える）。
+ */
+public class LoadTest {
+
+    enum Operation { LIST, DETAIL, SEARCH, LIKE, COMMENT, UPLOAD, LOGIN, REFRESH }
+
+    // 掲示用端末の定期更新で読み直す一覧
+    private static final String REFRESH_PATH = "/api/cases?sortBy=date";
+
+    private static final String[] SORTS = {"date", "likes", "views"};
+    private static final String[] KEYWORDS = {"段取り", "治具", "短縮", "作業手順", "改善事例"};
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    private final String baseUrl;
+    private final long[] caseIds;
+    private final String[] usernames;
+    private final String[] tokens;
+    private final long[][] departments;
+    private final byte[] uploadImage;
+    private final Operation[] mix;
+
+    private LoadTest(String baseUrl, long[] caseIds, String[] usernames, long[][] departments, Operation[] mix)
+            throws IOException, InterruptedException {
+        this.baseUrl = baseUrl;
+        this.caseIds = caseIds;
+        this.usernames = usernames;
+        this.tokens = new String[usernames.length];
+        for (int i = 0; i < usernames.length; i++) {
+            tokens[i] = login(usernames[i]);
+        }
+        this.departments = departments;
+        this.uploadImage = createImage();
+        this.mix = mix;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int caseCount = Integer.parseInt(options.getOrDefault("cases", "10000"));
+        int[] workerSteps = Arrays.stream(options.getOrDefault("workers", "10,25,50,100").split(","))
+            .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Map<Operation, Integer> weights = parseMix(options.getOrDefault("mix",
+            "list:40,detail:30,search:10,like:10,comment:8,upload:2"));
+        Path output = Paths.get(options.getOrDefault("output", "target/loadtest-result.json"));
+        boolean virtualThreads = Boolean.parseBoolean(options.getOrDefault("virtual-threads", "true"));
+        System.setProperty("spring.threads.virtual.enabled", String.valueOf(virtualThreads));
+        int replicas = Integer.parseInt(options.getOrDefault("replicas", "0"));
+        System.setProperty("kaizen.bench.replicas", String.valueOf(replicas));
+
+        BenchmarkEnvironment environment = BenchmarkEnvironment.get(caseCount, LoadTestInstrumentation.class);
+        try {
+            JdbcTemplate jdbcTemplate = environment.getBean(JdbcTemplate.class);
+            long[] caseIds = jdbcTemplate.queryForList("SELECT id FROM improvement_cases ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+            String[] usernames = jdbcTemplate.queryForList(
+                    "SELECT username FROM users WHERE username LIKE ? ORDER BY id", String.class,
+                    BenchmarkEnvironment.USERNAME + "%")
+                .toArray(new String[0]);
+            long[][] departments = jdbcTemplate.query("SELECT id, factory_id FROM departments ORDER BY id",
+                (rs, i) -> new long[]{rs.getLong("id"), rs.getLong("factory_id")}).toArray(new long[0][]);
+
+            LoadTest loadTest = new LoadTest("http://localhost:" + environment.getPort(),
+                caseIds, usernames, departments, expandMix(weights));
+
+            List<Map<String, Object>> stages = new ArrayList<>();
+            for (int workers : workerSteps) {
+                System.out.printf("%n=== %d workers: warmup %ds, measure %ds ===%n",
+                    workers, warmup.toSeconds(), duration.toSeconds());
+                loadTest.run(workers, warmup);
+                LoadTestInstrumentation.drain();
+                Map<Operation, Recorder> recorders = loadTest.run(workers, duration);
+                Map<String, LoadTestInstrumentation.EndpointSql> sql = LoadTestInstrumentation.drain();
+                stages.add(report(workers, duration, recorders, sql));
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("javaVersion", Runtime.version().toString());
+            result.put("virtualThreads", virtualThreads);
+            result.put("caseCount", caseCount);
+            result.put("replicas", environment.getReplicaCount());
+            result.put("warmupSeconds", warmup.toSeconds());
+            result.put("durationSeconds", duration.toSeconds());
+            result.put("mix", weights);
+            result.put("stages", stages);
+            if (environment.getReplicaCount() > 0) {
+                // 読み取り専用トランザクションの振り分け先（ウォームアップを含む全体）
+                Map<String, Double> reads = new LinkedHashMap<>();
+                environment.getBean(MeterRegistry.class).find("kaizen.datasource.reads").counters()
+                    .forEach(c -> reads.put(c.getId().getTag("target"), c.count()));
+                System.out.printf("%nRead-only transactions by target: %s%n", reads);
+                result.put("datasourceReads", reads);
+            }
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), result);
+            System.out.printf("%nResult is saved to %s%n", output);
+        } finally {
+            BenchmarkEnvironment.shutdown();
+        }
+    }
+
+    /**
+     * 指定の同時実行数で duration の間リクエストを送り続け、操作ごとの計測結果を返す。
+     */
+    private Map<Operation, Recorder> run(int workers, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Map<Operation, Recorder>>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> work(deadline)));
+            }
+            Map<Operation, Recorder> merged = new EnumMap<>(Operation.class);
+            for (Future<Map<Operation, Recorder>> future : futures) {
+                future.get().forEach((operation, recorder) ->
+                    merged.computeIfAbsent(operation, k -> new Recorder()).merge(recorder));
+            }
+            return merged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<Operation, Recorder> work(long deadline) {
+        Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+        Random random = ThreadLocalRandom.current();
+        String cursor = null;
+        String cursorSort = null;
+        String refreshEtag = null;
+        while (System.nanoTime() < deadline) {
+            Operation operation = mix[random.nextInt(mix.length)];
+            HttpRequest request;
+            String sort = null;
+            if (operation == Operation.LIST) {
+                // 3割は「もっと見る」で直前の一覧の次ページを読む
+                if (cursor != null && random.nextInt(10) < 3) {
+                    sort = cursorSort;
+                    request = get("/api/cases?sortBy=" + sort + "&cursor=" + encode(cursor));
+                } else {
+                    sort = SORTS[random.nextInt(SORTS.length)];
+                    request = get("/api/cases?sortBy=" + sort);
+                }
+            } else if (operation == Operation.REFRESH) {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + REFRESH_PATH)).GET();
+                if (refreshEtag != null) {
+                    builder.header("If-None-Match", refreshEtag);
+                }
+                request = builder.build();
+            } else {
+                request = request(operation, random);
+            }
+
+            Recorder recorder = recorders.computeIfAbsent(operation, k -> new Recorder());
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                long elapsed = System.nanoTime() - start;
+                if (response.statusCode() / 100 == 2 || response.statusCode() == 304) {
+                    recorder.record(elapsed);
+                    if (operation == Operation.LIST) {
+                        cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+                        cursorSort = sort;
+                    } else if (operation == Operation.REFRESH) {
+                        refreshEtag = response.headers().firstValue("ETag").orElse(refreshEtag);
+                    }
+                } else if (response.statusCode() == 503) {
+                    recorder.reject(elapsed);
+                    // 画面と同じく Retry-After の間を置いてから次の操作に移る
+                    long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                    Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(retryAfter),
+                        TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime()))));
+                } else {
+                    recorder.error();
+                }
+            } catch (IOException e) {
+                recorder.error();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return recorders;
+    }
+
+    private HttpRequest request(Operation operation, Random random) {
+        int user = random.nextInt(usernames.length);
+        String token = tokens[user];
+        switch (operation) {
+            case DETAIL:
+                return authorized(HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases/" + pickCase(random))).GET(), token);
+            case SEARCH:
+                return get("/api/cases?keyword=" + encode(KEYWORDS[random.nextInt(KEYWORDS.length)]));
+            case LIKE:
+                return postForm("/api/cases/" + pickCase(random) + "/like", Map.of(), token);
+            case COMMENT:
+                return postForm("/api/cases/" + pickCase(random) + "/comments", Map.of(
+                    "content", "参考になりました。自職場でも試してみます。"), token);
+            case UPLOAD:
+                return upload(random, token);
+            case LOGIN:
+                return loginRequest(usernames[user]);
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    /**
+     * 閲覧は新しい事例に偏るため、8割は直近1割の事例から選ぶ。
+     */
+    private long pickCase(Random random) {
+        int recent = Math.max(1, caseIds.length / 10);
+        int index = random.nextInt(10) < 8
+            ? caseIds.length - 1 - random.nextInt(recent)
+            : random.nextInt(caseIds.length);
+        return caseIds[index];
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest loginRequest(String username) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"" + username + "\",\"password\":\"" + BenchmarkEnvironment.PASSWORD + "\"}"))
+            .build();
+    }
+
+    private String login(String username) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(loginRequest(username), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + username + ": " + response.statusCode());
+        }
+        return response.body().replaceAll("(?s).*\"token\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+    }
+
+    private static HttpRequest authorized(HttpRequest.Builder builder, String token) {
+        return builder.header("Authorization", "Bearer " + token).build();
+    }
+
+    private HttpRequest postForm(String path, Map<String, String> form, String token) {
+        StringBuilder body = new StringBuilder();
+        form.forEach((key, value) -> {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(encode(key)).append('=').append(encode(value));
+        });
+        return authorized(HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString())), token);
+    }
+
+    private HttpRequest upload(Random random, String token) {
+        long[] department = departments[random.nextInt(departments.length)];
+        String boundary = UUID.randomUUID().toString();
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("title", "負荷試験 段取り改善");
+        fields.put("description", "作業手順を見直し、治具を共通化して段取り時間を短縮した。");
+        fields.put("factoryId", String.valueOf(department[1]));
+        fields.put("departmentId", String.valueOf(department[0]));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        fields.forEach((name, value) -> write(body, "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n"));
+        write(body, "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"images\"; filename=\"photo.jpg\"\r\n"
+            + "Content-Type: image/jpeg\r\n\r\n");
+        body.writeBytes(uploadImage);
+        write(body, "\r\n--" + boundary + "--\r\n");
+
+        return authorized(HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases"))
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())), token);
+    }
+
+    private static Map<String, Object> report(int workers, Duration duration, Map<Operation, Recorder> recorders,
+                                              Map<String, LoadTestInstrumentation.EndpointSql> sql) {
+        double seconds = duration.toNanos() / 1e9;
+        long total = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        System.out.printf("%-8s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+            "op", "count", "errors", "rejected", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Recorder recorder = recorders.get(operation);
+            if (recorder == null) {
+                continue;
+            }
+            long[] latencies = recorder.sorted();
+            total += latencies.length;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", latencies.length);
+            row.put("errors", recorder.errors);
+            row.put("rejected", recorder.rejected);
+            row.put("rejectedP99Ms", percentile(recorder.sortedRejections(), 0.99));
+            row.put("throughput", latencies.length / seconds);
+            row.put("p50Ms", percentile(latencies, 0.50));
+            row.put("p95Ms", percentile(latencies, 0.95));
+            row.put("p99Ms", percentile(latencies, 0.99));
+            row.put("maxMs", percentile(latencies, 1.0));
+            operations.put(operation.name().toLowerCase(), row);
+            System.out.printf("%-8s %8d %7d %9d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                operation.name().toLowerCase(), latencies.length, recorder.errors, recorder.rejected,
+                latencies.length / seconds,
+                row.get("p50Ms"), row.get("p95Ms"), row.get("p99Ms"), row.get("maxMs"));
+        }
+        System.out.printf("total throughput: %.1f req/s%n", total / seconds);
+
+        Map<String, Object> statements = new LinkedHashMap<>();
+        System.out.printf("%n%-40s %9s %11s %9s%n", "endpoint", "requests", "statements", "per req");
+        sql.forEach((endpoint, count) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("requests", count.requests());
+            row.put("statements", count.statements());
+            row.put("statementsPerRequest", count.statementsPerRequest());
+            statements.put(endpoint, row);
+            System.out.printf("%-40s %9d %11d %9.2f%n",
+                endpoint, count.requests(), count.statements(), count.statementsPerRequest());
+        });
+
+        Map<String, Object> stage = new LinkedHashMap<>();
+        stage.put("workers", workers);
+        stage.put("throughput", total / seconds);
+        stage.put("operations", operations);
+        stage.put("sqlStatements", statements);
+        return stage;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(Operation.valueOf(parts[0].toUpperCase()), Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    private static Operation[] expandMix(Map<Operation, Integer> weights) {
+        List<Operation> expanded = new ArrayList<>();
+        weights.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                expanded.add(operation);
+            }
+        });
+        if (expanded.isEmpty()) {
+            throw new IllegalArgumentException("Traffic mix is empty");
+        }
+        return expanded.toArray(new Operation[0]);
+    }
+
+    /**
+     * 投稿用の画像（スマートフォン写真を縮小した程度の 1600x1200 JPEG）。
+     */
+    private static byte[] createImage() throws IOException {
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int shade = (x + y) * 255 / (image.getWidth() + image.getHeight());
+                image.setRGB(x, y, ((shade + random.nextInt(32)) & 0xFF) * 0x010101);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+        private long rejected;
+        // 断られるまでの時間（待ち行列で待たされずにすぐ断られているかを見る）
+        private long[] rejections = new long[16];
+
+        void record(long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        void error() {
+            errors++;
+        }
+
+        void reject(long nanos) {
+            if (rejected == rejections.length) {
+                rejections = Arrays.copyOf(rejections, rejections.length * 2);
+            }
+            rejections[(int) rejected++] = nanos;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+            for (int i = 0; i < other.rejected; i++) {
+                reject(other.rejections[i]);
+            }
+        }
+
+        long[] sortedRejections() {
+            long[] sorted = Arrays.copyOf(rejections, (int) rejected);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.sql.SqlStatementCounter;
+import com.kaizen.sql.SqlStatistics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 負荷試験用の計測設定。本体の SqlStatementCounter が数えたリクエストごとのSQLの実行回数を
+ * エンドポイント（HTTPメソッド＋URLパターン）ごとに集計する。
+ * リクエスト外（閲覧数の定期書き込みなど）で実行されたSQLは BACKGROUND に計上する。
+ */
+@Configuration
+public class LoadTestInstrumentation {
+
+    public static final String BACKGROUND = "(background)";
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final AtomicLong BACKGROUND_DRAINED = new AtomicLong();
+
+    public record EndpointSql(long requests, long statements) {
+
+        public double statementsPerRequest() {
+            return requests == 0 ? statements : (double) statements / requests;
+        }
+    }
+
+    /**
+     * 現在の集計値を返してリセットする。
+     */
+    public static Map<String, EndpointSql> drain() {
+        Map<String, EndpointSql> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            Counter counter = entry.getValue();
+            snapshot.put(entry.getKey(), new EndpointSql(counter.requests.sumThenReset(), counter.statements.sumThenReset()));
+        }
+        long background = SqlStatementCounter.backgroundStatements();
+        snapshot.put(BACKGROUND, new EndpointSql(0, background - BACKGROUND_DRAINED.getAndSet(background)));
+        return snapshot;
+    }
+
+    @Bean
+    public OncePerRequestFilter statementCountingFilter() {
+        return new StatementCountingFilter();
+    }
+
+    private static final class Counter {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+    }
+
+    private static final class StatementCountingFilter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                // 本体の SqlBudgetFilter の内側で実行されるため、集計はまだ有効
+                SqlStatistics statistics = SqlStatementCounter.current();
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+                Counter counter = COUNTERS.computeIfAbsent(endpoint, k -> new Counter());
+                counter.requests.increment();
+                counter.statements.add(statistics != null ? statistics.getStatements() : 0);
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.kaizen;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class KaizenApplication {
     public static void main(String[] args) {
         SpringApplication.run(KaizenApplication.class, args);
@@ -0,0 +1,44 @@
+package com.kaizen.bulk;
+
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 一括エクスポート・インポートの形式。NDJSON は1行1件のJSON、CSV は1行目が列名。
+ */
+public enum BulkFormat {
+    NDJSON("ndjson", new MediaType("application", "x-ndjson")),
+    CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+    private final String param;
+    private final MediaType mediaType;
+
+    BulkFormat(String param, MediaType mediaType) {
+        this.param = param;
+        this.mediaType = mediaType;
+    }
+
+    public static BulkFormat fromParam(String format) {
+        for (BulkFormat bulkFormat : values()) {
+            if (bulkFormat.param.equalsIgnoreCase(format)) {
+                return bulkFormat;
+            }
+        }
+        return NDJSON;
+    }
+
+    // 形式の指定がない場合は Content-Type で判断する
+    public static BulkFormat fromContentType(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv") ? CSV : NDJSON;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,118 @@
+package com.kaizen.bulk;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+/**
+ * 事例の一括エクスポート。工場・係・投稿者の名前と画像パスを含めた全件を、PostgreSQL の COPY で
+ * DBから直接 NDJSON・CSV に書き出す。行は受け取った順に応答へ書き出すため、件数によらず使用メモリが一定になる。
+ * インポート（{@link CaseImportService}）は同じ形式を読み込める。
+ */
+@Service
+public class CaseExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaseExportService.class);
+
+    // CSV の画像パスの区切り。medium・thumbnail のない画像は空文字になる
+    static final String PATH_SEPARATOR = "|";
+
+    // 表計算ソフトで文字化けしないよう CSV の先頭に付ける
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private static final String FROM =
+        " FROM improvement_cases c" +
+        " JOIN factories f ON f.id = c.factory_id" +
+        " JOIN departments d ON d.id = c.department_id" +
+        " JOIN users u ON u.id = c.user_id" +
+        " LEFT JOIN LATERAL (SELECT" +
+        " array_agg(i.image_path ORDER BY i.image_order, i.id) AS images," +
+        " array_agg(i.medium_path ORDER BY i.image_order, i.id) AS medium_images," +
+        " array_agg(i.thumbnail_path ORDER BY i.image_order, i.id) AS thumbnails" +
+        " FROM case_images i WHERE i.case_id = c.id) i ON true";
+
+    private static final String NDJSON_SELECT =
+        "SELECT json_build_object(" +
+        "'id', c.id, 'title', c.title, 'description', c.description, " +
+        "'factoryId', c.factory_id, 'factoryName', f.name, 'departmentId', c.department_id, 'departmentName', d.name, " +
+        "'userId', c.user_id, 'username', u.username, " +
+        "'viewCount', c.view_count, 'likeCount', c.like_count, 'commentCount', c.comment_count, " +
+        "'createdAt', c.created_at, 'updatedAt', c.updated_at, " +
+        "'images', COALESCE(i.images, '{}'), 'mediumImages', COALESCE(i.medium_images, '{}'), " +
+        "'thumbnails', COALESCE(i.thumbnails, '{}'))";
+
+    private static final String CSV_SELECT =
+        "SELECT c.id, c.title, c.description, c.factory_id AS \"factoryId\", f.name AS \"factoryName\", " +
+        "c.department_id AS \"departmentId\", d.name AS \"departmentName\", c.user_id AS \"userId\", u.username, " +
+        "c.view_count AS \"viewCount\", c.like_count AS \"likeCount\", c.comment_count AS \"commentCount\", " +
+        "c.created_at AS \"createdAt\", c.updated_at AS \"updatedAt\", " +
+        "array_to_string(i.images, '" + PATH_SEPARATOR + "', '') AS images, " +
+        "array_to_string(i.medium_images, '" + PATH_SEPARATOR + "', '') AS \"mediumImages\", " +
+        "array_to_string(i.thumbnails, '" + PATH_SEPARATOR + "', '') AS thumbnails";
+
+    // JSON は改行・制御文字をエスケープして出力するため、使われない文字を区切り・引用符にすると1行1件のまま出る
+    private static final String NDJSON_OPTIONS = "(FORMAT csv, DELIMITER E'\\x02', QUOTE E'\\x01')";
+    private static final String CSV_OPTIONS = "(FORMAT csv, HEADER)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 条件に合う事例をID順に書き出し、件数を返す。from・to は投稿日（両端を含む）。
+     * 読み取り専用のため、レプリカを設定している場合はレプリカから読む。
+     */
+    @Transactional(readOnly = true)
+    public long export(OutputStream out, BulkFormat format, Long factoryId, Long departmentId,
+                       LocalDate from, LocalDate to) throws IOException {
+        boolean csv = format == BulkFormat.CSV;
+        String sql = "COPY (" + (csv ? CSV_SELECT : NDJSON_SELECT) + FROM
+            + where(factoryId, departmentId, from, to) + " ORDER BY c.id) TO STDOUT WITH "
+            + (csv ? CSV_OPTIONS : NDJSON_OPTIONS);
+        if (csv) {
+            out.write(UTF8_BOM);
+        }
+        long started = System.nanoTime();
+        long rows;
+        try {
+            rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Exported {} cases as {} in {} ms", rows, format, (System.nanoTime() - started) / 1_000_000);
+        return rows;
+    }
+
+    // COPY ではバインド変数を使えないため、数値と日付だけを埋め込む
+    private static String where(Long factoryId, Long departmentId, LocalDate from, LocalDate to) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (factoryId != null) {
+            where.append(" AND c.factory_id = ").append(factoryId.longValue());
+        }
+        if (departmentId != null) {
+            where.append(" AND c.department_id = ").append(departmentId.longValue());
+        }
+        if (from != null) {
+            where.append(" AND c.created_at >= DATE '").append(from).append('\'');
+        }
+        if (to != null) {
+            where.append(" AND c.created_at < DATE '").append(to.plusDays(1)).append('\'');
+        }
+        return where.toString();
+    }
+}
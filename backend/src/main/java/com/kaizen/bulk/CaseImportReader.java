@@ -0,0 +1,270 @@
+package com.kaizen.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * インポートする NDJSON・CSV を1件ずつ読む。読み終えた行は保持しないため、件数によらず使用メモリが一定になる。
+ * 形式の誤りはその行だけの {@link InvalidRowException} とし、続きの行は読み続けられる。
+ */
+abstract class CaseImportReader {
+
+    private static final char BOM = '\uFEFF';
+
+    protected final BufferedReader reader;
+
+    private CaseImportReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    static CaseImportReader open(InputStream in, BulkFormat format, ObjectMapper objectMapper) {
+        return format == BulkFormat.CSV ? new Csv(in) : new Ndjson(in, objectMapper);
+    }
+
+    /**
+     * 次の1件。終わりに達した場合は null。
+     */
+    abstract CaseImportRow next() throws IOException, InvalidRowException;
+
+    static final class InvalidRowException extends Exception {
+
+        private final long line;
+
+        InvalidRowException(long line, String message) {
+            super(message);
+            this.line = line;
+        }
+
+        long getLine() {
+            return line;
+        }
+    }
+
+    private static final class Ndjson extends CaseImportReader {
+
+        private final ObjectMapper objectMapper;
+        private long line;
+
+        Ndjson(InputStream in, ObjectMapper objectMapper) {
+            super(in);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        CaseImportRow next() throws IOException, InvalidRowException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+                if (line == 1 && !text.isEmpty() && text.charAt(0) == BOM) {
+                    text = text.substring(1);
+                }
+            } while (text.isBlank());
+
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                throw new InvalidRowException(line, "invalid JSON: " + e.getOriginalMessage());
+            }
+            if (!node.isObject()) {
+                throw new InvalidRowException(line, "each line must be a JSON object");
+            }
+            return new CaseImportRow(line,
+                text(node, "title"), text(node, "description"),
+                number(node, "factoryId"), text(node, "factoryName"),
+                number(node, "departmentId"), text(node, "departmentName"),
+                number(node, "userId"), text(node, "username"),
+                dateTime(line, text(node, "createdAt")),
+                paths(node, "images"), paths(node, "mediumImages"), paths(node, "thumbnails"));
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+
+        private Long number(JsonNode node, String field) throws InvalidRowException {
+            return parseLong(line, field, text(node, field));
+        }
+
+        private List<String> paths(JsonNode node, String field) throws InvalidRowException {
+            JsonNode value = node.get(field);
+            if (value == null || value.isNull()) {
+                return List.of();
+            }
+            if (!value.isArray()) {
+                throw new InvalidRowException(line, field + " must be an array");
+            }
+            List<String> paths = new ArrayList<>(value.size());
+            value.forEach(path -> paths.add(path.isNull() || path.asText().isEmpty() ? null : path.asText()));
+            return paths;
+        }
+    }
+
+    /**
+     * RFC 4180 の CSV（引用符で囲んだ値の中の改行・区切り・"" を含む）。1行目の列名で値を対応付ける。
+     */
+    private static final class Csv extends CaseImportReader {
+
+        private Map<String, Integer> columns;
+        private long line = 1;
+        private long recordLine;
+        private boolean eof;
+
+        Csv(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        CaseImportRow next() throws IOException, InvalidRowException {
+            if (columns == null) {
+                List<String> header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    String name = header.get(i).trim();
+                    if (i == 0 && !name.isEmpty() && name.charAt(0) == BOM) {
+                        name = name.substring(1);
+                    }
+                    columns.put(name, i);
+                }
+            }
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isBlank());
+
+            return new CaseImportRow(recordLine,
+                value(record, "title"), value(record, "description"),
+                parseLong(recordLine, "factoryId", value(record, "factoryId")), value(record, "factoryName"),
+                parseLong(recordLine, "departmentId", value(record, "departmentId")), value(record, "departmentName"),
+                parseLong(recordLine, "userId", value(record, "userId")), value(record, "username"),
+                dateTime(recordLine, value(record, "createdAt")),
+                paths(record, "images"), paths(record, "mediumImages"), paths(record, "thumbnails"));
+        }
+
+        // 空欄は null とする
+        private String value(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+                return null;
+            }
+            return record.get(index);
+        }
+
+        private List<String> paths(List<String> record, String column) {
+            String value = value(record, column);
+            if (value == null) {
+                return List.of();
+            }
+            List<String> paths = new ArrayList<>(Arrays.asList(value.split(Pattern.quote(CaseExportService.PATH_SEPARATOR), -1)));
+            paths.replaceAll(path -> path.isEmpty() ? null : path);
+            return paths;
+        }
+
+        private List<String> readRecord() throws IOException {
+            if (eof) {
+                return null;
+            }
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) {
+                eof = true;
+                return null;
+            }
+            while (true) {
+                if (c == -1) {
+                    eof = true;
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    line++;
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+
+    private static Long parseLong(long line, String field, String value) throws InvalidRowException {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidRowException(line, field + " is not a number: " + value);
+        }
+    }
+
+    // "2024-04-01"、"2024-04-01 08:30:00"、"2024-04-01T08:30:00.123" のいずれか
+    private static LocalDateTime dateTime(long line, String value) throws InvalidRowException {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String text = value.trim().replace(' ', 'T');
+        try {
+            return text.length() == 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new InvalidRowException(line, "createdAt is not a date: " + value);
+        }
+    }
+}
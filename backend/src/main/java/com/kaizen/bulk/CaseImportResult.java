@@ -0,0 +1,17 @@
+package com.kaizen.bulk;
+
+import java.util.List;
+
+/**
+ * インポートの結果。errors は失敗した行（NDJSON は行番号、CSV はレコードの開始行）と理由で、
+ * 上限（bulk.import.max-errors）を超えた分は errorsTruncated を立てて省く。
+ */
+public record CaseImportResult(
+        long imported,
+        long failed,
+        List<RowError> errors,
+        boolean errorsTruncated) {
+
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.kaizen.bulk;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * インポートする1件。工場・係・投稿者はIDか名前のどちらかで指定する。
+ * エクスポートに含まれるID・件数・更新日時は読み込まない（IDは新たに採番し、件数は0から数える）。
+ */
+record CaseImportRow(
+        long line,
+        String title,
+        String description,
+        Long factoryId,
+        String factoryName,
+        Long departmentId,
+        String departmentName,
+        Long userId,
+        String username,
+        LocalDateTime createdAt,
+        List<String> images,
+        List<String> mediumImages,
+        List<String> thumbnails) {
+}
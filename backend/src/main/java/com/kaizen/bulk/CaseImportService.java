@@ -0,0 +1,389 @@
+package com.kaizen.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaizen.service.CaseService;
+import com.kaizen.service.StatisticsService;
+import com.kaizen.storage.FileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 事例の一括インポート。読み込んだ行を bulk.import.batch-size 件ずつ、事例・画像の INSERT をそれぞれ
+ * 1回のJDBCバッチにまとめて1トランザクションで登録する（接続URLの reWriteBatchedInserts で複数行の INSERT になる）。
+ * 統計集計と画像ファイルの参照数もバッチごとにまとめて更新する。
+ *
+ * 内容の誤り（必須項目の欠落、存在しない工場・係・投稿者など）は登録前に行ごとに判定して結果に返す。
+ * DBで失敗したバッチは1件ずつ登録し直し、失敗した行だけを結果に返す。
+ */
+@Service
+public class CaseImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaseImportService.class);
+
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final int MAX_PATH_LENGTH = 500;
+    // 事例画像のIDは Hibernate と同じく、シーケンスの増分（50）ごとのまとまりで採番する
+    private static final int IMAGE_ID_BLOCK = 50;
+
+    private static final String SELECT_FACTORIES = "SELECT id, name FROM factories ORDER BY id";
+    private static final String SELECT_DEPARTMENTS = "SELECT id, factory_id, name FROM departments ORDER BY id";
+    private static final String SELECT_USERS = "SELECT id, username FROM users WHERE id = ANY(?) OR username = ANY(?)";
+    private static final String NEXT_CASE_IDS = "SELECT nextval('improvement_cases_id_seq') FROM generate_series(1, ?)";
+    private static final String NEXT_IMAGE_ID_BLOCKS = "SELECT nextval('case_images_id_seq') FROM generate_series(1, ?)";
+    private static final String INSERT_CASE =
+        "INSERT INTO improvement_cases (id, title, description, factory_id, department_id, user_id, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IMAGE =
+        "INSERT INTO case_images (id, case_id, image_path, medium_path, thumbnail_path, image_order, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Value("${bulk.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${bulk.import.max-errors:1000}")
+    private int maxErrors;
+
+    public CaseImportResult importCases(InputStream in, BulkFormat format) throws IOException {
+        long started = System.nanoTime();
+        References references = loadReferences();
+        Result result = new Result();
+        CaseImportReader reader = CaseImportReader.open(in, format, objectMapper);
+        List<PendingCase> batch = new ArrayList<>(batchSize);
+        while (true) {
+            CaseImportRow row;
+            try {
+                row = reader.next();
+            } catch (CaseImportReader.InvalidRowException e) {
+                result.fail(e.getLine(), e.getMessage());
+                continue;
+            }
+            if (row == null) {
+                break;
+            }
+            try {
+                batch.add(references.resolve(row));
+            } catch (IllegalArgumentException e) {
+                result.fail(row.line(), e.getMessage());
+            }
+            if (batch.size() >= batchSize) {
+                flush(batch, result);
+                batch.clear();
+            }
+        }
+        flush(batch, result);
+
+        log.info("Imported {} cases as {} ({} failed) in {} ms",
+            result.imported, format, result.failed, (System.nanoTime() - started) / 1_000_000);
+        // 投稿者の確認はバッチ単位のため、行番号順に並べ直す
+        result.errors.sort(Comparator.comparingLong(CaseImportResult.RowError::line));
+        return new CaseImportResult(result.imported, result.failed, result.errors, result.errorsTruncated);
+    }
+
+    private void flush(List<PendingCase> batch, Result result) {
+        List<PendingCase> valid = resolveUsers(batch, result);
+        if (valid.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(valid));
+            result.imported += valid.size();
+        } catch (DataAccessException e) {
+            // どの行で失敗したかはバッチからは分からないため、1件ずつ登録し直す
+            log.debug("Import batch failed; retrying row by row", e);
+            for (PendingCase pending : valid) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(pending)));
+                    result.imported++;
+                } catch (DataAccessException rowError) {
+                    result.fail(pending.row().line(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                }
+            }
+        }
+    }
+
+    // 投稿者はバッチごとに1回の検索でIDか利用者名から確定する
+    private List<PendingCase> resolveUsers(List<PendingCase> batch, Result result) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        Set<Long> ids = new HashSet<>();
+        Set<String> usernames = new HashSet<>();
+        for (PendingCase pending : batch) {
+            if (pending.row().userId() != null) {
+                ids.add(pending.row().userId());
+            } else {
+                usernames.add(pending.row().username());
+            }
+        }
+        Set<Long> existingIds = new HashSet<>();
+        Map<String, Long> idsByUsername = new HashMap<>();
+        jdbcTemplate.query(SELECT_USERS, rs -> {
+            existingIds.add(rs.getLong("id"));
+            idsByUsername.put(rs.getString("username"), rs.getLong("id"));
+        }, ids.toArray(new Long[0]), usernames.toArray(new String[0]));
+
+        List<PendingCase> valid = new ArrayList<>(batch.size());
+        for (PendingCase pending : batch) {
+            CaseImportRow row = pending.row();
+            Long userId = row.userId() != null
+                ? (existingIds.contains(row.userId()) ? row.userId() : null)
+                : idsByUsername.get(row.username());
+            if (userId == null) {
+                result.fail(row.line(), "unknown user: " + (row.userId() != null ? row.userId() : row.username()));
+            } else {
+                valid.add(pending.withUser(userId));
+            }
+        }
+        return valid;
+    }
+
+    private void insert(List<PendingCase> cases) {
+        List<Long> caseIds = jdbcTemplate.queryForList(NEXT_CASE_IDS, Long.class, cases.size());
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_CASE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                PendingCase pending = cases.get(i);
+                Timestamp createdAt = Timestamp.valueOf(pending.row().createdAt() != null ? pending.row().createdAt() : now);
+                ps.setLong(1, caseIds.get(i));
+                ps.setString(2, pending.row().title());
+                ps.setString(3, pending.row().description());
+                ps.setLong(4, pending.factoryId());
+                ps.setLong(5, pending.departmentId());
+                ps.setLong(6, pending.userId());
+                ps.setTimestamp(7, createdAt);
+                ps.setTimestamp(8, createdAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return cases.size();
+            }
+        });
+
+        int imageCount = cases.stream().mapToInt(pending -> pending.row().images().size()).sum();
+        if (imageCount > 0) {
+            long[] imageIds = allocateImageIds(imageCount);
+            List<Object[]> images = new ArrayList<>(imageCount);
+            List<String> paths = new ArrayList<>(imageCount * 3);
+            Timestamp createdAt = Timestamp.valueOf(now);
+            for (int i = 0; i < cases.size(); i++) {
+                CaseImportRow row = cases.get(i).row();
+                for (int order = 0; order < row.images().size(); order++) {
+                    String image = row.images().get(order);
+                    String medium = pathAt(row.mediumImages(), order);
+                    String thumbnail = pathAt(row.thumbnails(), order);
+                    images.add(new Object[]{imageIds[images.size()], caseIds.get(i), image, medium, thumbnail, order, createdAt});
+                    paths.add(image);
+                    if (medium != null) paths.add(medium);
+                    if (thumbnail != null) paths.add(thumbnail);
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_IMAGE, images);
+            // 保存済みのファイルを参照する場合は、事例の削除で消えないよう参照を追加する
+            fileStore.retainAll(paths);
+        }
+        statisticsService.casesCreated(caseIds);
+    }
+
+    private long[] allocateImageIds(int count) {
+        long[] ids = new long[count];
+        int next = 0;
+        while (next < count) {
+            int blocks = (count - next + IMAGE_ID_BLOCK - 1) / IMAGE_ID_BLOCK;
+            for (long high : jdbcTemplate.queryForList(NEXT_IMAGE_ID_BLOCKS, Long.class, blocks)) {
+                // シーケンスの先頭（1）のように増分に満たない値は、1から使える分だけ使う
+                for (long id = Math.max(1, high - IMAGE_ID_BLOCK + 1); id <= high && next < count; id++) {
+                    ids[next++] = id;
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String pathAt(List<String> paths, int index) {
+        return index < paths.size() ? paths.get(index) : null;
+    }
+
+    private References loadReferences() {
+        References references = new References(fileStore);
+        jdbcTemplate.query(SELECT_FACTORIES, rs -> {
+            references.factoryIds.add(rs.getLong("id"));
+            references.factoryIdsByName.merge(rs.getString("name"), rs.getLong("id"), (a, b) -> References.AMBIGUOUS);
+        });
+        jdbcTemplate.query(SELECT_DEPARTMENTS, rs -> {
+            long factoryId = rs.getLong("factory_id");
+            references.departmentFactories.put(rs.getLong("id"), factoryId);
+            references.departmentIdsByName.computeIfAbsent(factoryId, id -> new HashMap<>())
+                .merge(rs.getString("name"), rs.getLong("id"), (a, b) -> References.AMBIGUOUS);
+        });
+        return references;
+    }
+
+    /**
+     * 工場・係（件数が少ないため開始時に全件読む）と、行の内容の確認。
+     */
+    private static final class References {
+
+        static final long AMBIGUOUS = -1;
+
+        final Set<Long> factoryIds = new HashSet<>();
+        final Map<String, Long> factoryIdsByName = new HashMap<>();
+        final Map<Long, Long> departmentFactories = new HashMap<>();
+        final Map<Long, Map<String, Long>> departmentIdsByName = new HashMap<>();
+        final FileStore fileStore;
+
+        References(FileStore fileStore) {
+            this.fileStore = fileStore;
+        }
+
+        PendingCase resolve(CaseImportRow row) {
+            if (row.title() == null || row.title().isBlank()) {
+                throw new IllegalArgumentException("title is required");
+            }
+            if (row.title().length() > MAX_TITLE_LENGTH) {
+                throw new IllegalArgumentException("title is longer than " + MAX_TITLE_LENGTH + " characters");
+            }
+            if (row.description() == null) {
+                throw new IllegalArgumentException("description is required");
+            }
+            if (row.userId() == null && (row.username() == null || row.username().isBlank())) {
+                throw new IllegalArgumentException("userId or username is required");
+            }
+            long factoryId = factoryId(row);
+            long departmentId = departmentId(row, factoryId);
+            checkImages(row);
+            return new PendingCase(row, factoryId, departmentId, null);
+        }
+
+        private long factoryId(CaseImportRow row) {
+            if (row.factoryId() != null) {
+                if (!factoryIds.contains(row.factoryId())) {
+                    throw new IllegalArgumentException("unknown factory: " + row.factoryId());
+                }
+                return row.factoryId();
+            }
+            if (row.factoryName() == null) {
+                throw new IllegalArgumentException("factoryId or factoryName is required");
+            }
+            return byName(factoryIdsByName, row.factoryName(), "factory");
+        }
+
+        private long departmentId(CaseImportRow row, long factoryId) {
+            if (row.departmentId() != null) {
+                Long departmentFactory = departmentFactories.get(row.departmentId());
+                if (departmentFactory == null) {
+                    throw new IllegalArgumentException("unknown department: " + row.departmentId());
+                }
+                if (departmentFactory != factoryId) {
+                    throw new IllegalArgumentException(
+                        "department " + row.departmentId() + " does not belong to factory " + factoryId);
+                }
+                return row.departmentId();
+            }
+            if (row.departmentName() == null) {
+                throw new IllegalArgumentException("departmentId or departmentName is required");
+            }
+            return byName(departmentIdsByName.getOrDefault(factoryId, Map.of()), row.departmentName(), "department");
+        }
+
+        private static long byName(Map<String, Long> idsByName, String name, String kind) {
+            Long id = idsByName.get(name);
+            if (id == null) {
+                throw new IllegalArgumentException("unknown " + kind + ": " + name);
+            }
+            if (id == AMBIGUOUS) {
+                throw new IllegalArgumentException(kind + " name is ambiguous, use " + kind + "Id: " + name);
+            }
+            return id;
+        }
+
+        // 画像は保存済みの公開パスで指定する（ファイル自体は取り込まない）。存在しないファイルを指す行は取り込まない
+        private void checkImages(CaseImportRow row) {
+            if (row.images().size() > CaseService.MAX_IMAGES) {
+                throw new IllegalArgumentException("more than " + CaseService.MAX_IMAGES + " images");
+            }
+            if (row.mediumImages().size() > row.images().size() || row.thumbnails().size() > row.images().size()) {
+                throw new IllegalArgumentException("more mediumImages or thumbnails than images");
+            }
+            if (row.images().stream().anyMatch(Objects::isNull)) {
+                throw new IllegalArgumentException("image path is empty");
+            }
+            for (List<String> paths : List.of(row.images(), row.mediumImages(), row.thumbnails())) {
+                for (String path : paths) {
+                    if (path != null && !path.startsWith(FileStore.URL_PREFIX)) {
+                        throw new IllegalArgumentException("image path must start with " + FileStore.URL_PREFIX + ": " + path);
+                    }
+                    if (path != null && path.length() > MAX_PATH_LENGTH) {
+                        throw new IllegalArgumentException("image path is longer than " + MAX_PATH_LENGTH + " characters");
+                    }
+                    if (path != null && fileStore.resolve(path.substring(FileStore.URL_PREFIX.length())).isEmpty()) {
+                        throw new IllegalArgumentException("image file not found: " + path);
+                    }
+                }
+            }
+        }
+    }
+
+    private record PendingCase(CaseImportRow row, long factoryId, long departmentId, Long userId) {
+
+        PendingCase withUser(long userId) {
+            return new PendingCase(row, factoryId, departmentId, userId);
+        }
+    }
+
+    private final class Result {
+
+        long imported;
+        long failed;
+        final List<CaseImportResult.RowError> errors = new ArrayList<>();
+        boolean errorsTruncated;
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new CaseImportResult.RowError(line, message));
+            } else {
+                errorsTruncated = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.kaizen.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String FACTORIES = "factories";
+    public static final String DEPARTMENTS = "departments";
+    public static final String CASE_DETAILS = "caseDetails";
+    public static final String USER_PRINCIPALS = "userPrincipals";
+
+    @Value("${cache.reference.max-size:1000}")
+    private long referenceMaxSize;
+
+    @Value("${cache.reference.ttl-seconds:600}")
+    private long referenceTtlSeconds;
+
+    @Value("${cache.case-details.max-size:5000}")
+    private long caseDetailsMaxSize;
+
+    @Value("${cache.case-details.ttl-seconds:300}")
+    private long caseDetailsTtlSeconds;
+
+    @Value("${cache.user-principals.max-size:10000}")
+    private long userPrincipalsMaxSize;
+
+    @Value("${cache.user-principals.ttl-seconds:600}")
+    private long userPrincipalsTtlSeconds;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // 工場・係はほとんど変更されないため長めに保持する
+        cacheManager.registerCustomCache(FACTORIES, Caffeine.newBuilder()
+            .maximumSize(referenceMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(referenceTtlSeconds))
+            .recordStats()
+            .build());
+        cacheManager.registerCustomCache(DEPARTMENTS, Caffeine.newBuilder()
+            .maximumSize(referenceMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(referenceTtlSeconds))
+            .recordStats()
+            .build());
+        // 事例詳細のレスポンスは更新・削除・いいね・コメント・閲覧数書き込み時に明示的に破棄する
+        cacheManager.registerCustomCache(CASE_DETAILS, Caffeine.newBuilder()
+            .maximumSize(caseDetailsMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(caseDetailsTtlSeconds))
+            .recordStats()
+            .build());
+        // トークンを検証したリクエストの利用者。権限の変更は有効期限が切れるまで反映されない
+        cacheManager.registerCustomCache(USER_PRINCIPALS, Caffeine.newBuilder()
+            .maximumSize(userPrincipalsMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(userPrincipalsTtlSeconds))
+            .recordStats()
+            .build());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,16 @@
+package com.kaizen.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // レスポンスDTOのgetter呼び出しをリフレクションではなく生成したラムダで行う
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
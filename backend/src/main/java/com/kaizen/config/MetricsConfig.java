@@ -0,0 +1,66 @@
+package com.kaizen.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * メトリクスの追加設定。エンドポイントごとの処理時間（http.server.requests）、
+ * リポジトリのメソッドごとの処理時間（spring.data.repository.invocations）、
+ * JVM・接続プール（jvm.*, hikaricp.*）は Spring Boot が自動で記録する。
+ * ここでは @Timed を付けたクラス（ファイル保存）の計測と Hibernate の統計を追加する。
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    /**
+     * Hibernate の統計（hibernate.generate_statistics）を累積カウンタとして公開する。
+     * リクエストあたりのSQL数は hibernate.statements と http.server.requests の件数の比で求める。
+     */
+    @Bean
+    public MeterBinder hibernateStatisticsMetrics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            if (!statistics.isStatisticsEnabled()) {
+                return;
+            }
+            counter(registry, statistics, "hibernate.statements", "JDBC statements prepared", Statistics::getPrepareStatementCount);
+            counter(registry, statistics, "hibernate.query.executions", "HQL/SQL queries executed", Statistics::getQueryExecutionCount);
+            counter(registry, statistics, "hibernate.entities.loads", "Entities loaded", Statistics::getEntityLoadCount);
+            counter(registry, statistics, "hibernate.entities.fetches", "Entities fetched by a separate select", Statistics::getEntityFetchCount);
+            counter(registry, statistics, "hibernate.entities.inserts", "Entities inserted", Statistics::getEntityInsertCount);
+            counter(registry, statistics, "hibernate.entities.updates", "Entities updated", Statistics::getEntityUpdateCount);
+            counter(registry, statistics, "hibernate.entities.deletes", "Entities deleted", Statistics::getEntityDeleteCount);
+            counter(registry, statistics, "hibernate.collections.loads", "Collections loaded", Statistics::getCollectionLoadCount);
+            counter(registry, statistics, "hibernate.collections.fetches", "Collections fetched by a separate select", Statistics::getCollectionFetchCount);
+            counter(registry, statistics, "hibernate.sessions.open", "Sessions opened", Statistics::getSessionOpenCount);
+            counter(registry, statistics, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+            counter(registry, statistics, "hibernate.transactions", "Transactions completed", Statistics::getTransactionCount);
+            Gauge.builder("hibernate.query.executions.max", statistics, Statistics::getQueryExecutionMaxTime)
+                .description("Slowest query execution time in milliseconds")
+                .baseUnit("milliseconds")
+                .register(registry);
+        };
+    }
+
+    private static void counter(MeterRegistry registry, Statistics statistics, String name, String description,
+                                ToDoubleFunction<Statistics> count) {
+        FunctionCounter.builder(name, statistics, count)
+            .description(description)
+            .register(registry);
+    }
+}
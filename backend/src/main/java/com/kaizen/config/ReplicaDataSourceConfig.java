@@ -0,0 +1,106 @@
+package com.kaizen.config;
+
+import com.kaizen.datasource.ReadYourWrites;
+import com.kaizen.datasource.ReplicaMonitor;
+import com.kaizen.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 読み取りのレプリカへの振り分け。datasource.replica.urls を設定した場合だけ有効になり、
+ * 未設定の場合は Spring Boot の既定どおりプライマリ1つの接続プールを使う。
+ * 接続プールはプライマリ（spring.datasource.*）とレプリカごとに作り、メトリクスは pool ごとに出す。
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Value("${datasource.replica.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replica.pool-size:20}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replica.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    @Value("${datasource.replica.read-your-writes.max-users:100000}")
+    private long readYourWritesMaxUsers;
+
+    @Value("${datasource.replica.check-interval-ms:1000}")
+    private long checkIntervalMs;
+
+    @Value("${datasource.replica.check-timeout-ms:2000}")
+    private long checkTimeoutMs;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private ReplicaMonitor replicaMonitor;
+
+    @Bean
+    public ReplicaMonitor replicaMonitor(DataSourceProperties properties, Environment environment,
+                                         MeterRegistry meterRegistry) {
+        HikariDataSource primary = pool(properties, environment, meterRegistry, "primary", properties.getUrl());
+        List<ReplicaMonitor.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = pool(properties, environment, meterRegistry, name, replicaUrls.get(i).trim());
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            replicas.add(new ReplicaMonitor.Replica(name, replica));
+        }
+        replicaMonitor = new ReplicaMonitor(primary, replicas, Duration.ofMillis(maxLagMs),
+            Duration.ofMillis(checkTimeoutMs), meterRegistry);
+        replicaMonitor.start(Duration.ofMillis(checkIntervalMs));
+        return replicaMonitor;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites() {
+        return new ReadYourWrites(Duration.ofMillis(maxLagMs), readYourWritesMaxUsers);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaMonitor replicaMonitor, ReadYourWrites readYourWrites,
+                                 MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+            replicaMonitor.getPrimary(), replicaMonitor, readYourWrites, meterRegistry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @PreDestroy
+    public void close() {
+        // 確認のスレッドを止めてから接続プールを閉じる
+        if (replicaMonitor != null) {
+            replicaMonitor.close();
+        }
+        pools.forEach(HikariDataSource::close);
+    }
+
+    // spring.datasource.hikari.* の設定をそのまま使い、URLとプール名だけを変える
+    private HikariDataSource pool(DataSourceProperties properties, Environment environment,
+                                  MeterRegistry meterRegistry, String name, String url) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        pools.add(pool);
+        return pool;
+    }
+}
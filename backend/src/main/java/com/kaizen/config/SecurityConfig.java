@@ -1,14 +1,29 @@
 package com.kaizen.config;
 
+import com.kaizen.controller.CaseController;
+import com.kaizen.security.TokenAuthenticationFilter;
+import com.kaizen.security.TokenService;
+import com.kaizen.security.UserPrincipalService;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -19,13 +34,29 @@ import java.util.Arrays;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // 依存先が passwordEncoder を使うため、フィールドではなく引数で受け取って循環参照を避ける
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenService tokenService,
+                                                   UserPrincipalService userPrincipalService,
+                                                   Environment environment) throws Exception {
+        // 管理用エンドポイントを公開しない別のポートで受ける場合は、メトリクスの収集を認証なしで許す
+        // （同じポートで受ける場合は他の管理用エンドポイントと同じく管理者に限る）
+        AuthorizationManager<RequestAuthorizationContext> metricsAccess =
+            ManagementPortType.get(environment) == ManagementPortType.DIFFERENT
+                ? (authentication, context) -> new AuthorizationDecision(true)
+                : AuthorityAuthorizationManager.hasRole("ADMIN");
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(auth -> auth
+                // ストリーミング応答の続き（非同期ディスパッチ）は最初のリクエストで認可済み
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                // 管理用エンドポイントはヘルスチェックとメトリクスの収集以外を管理者に限る（caches の DELETE なども含む）
+                .requestMatchers(EndpointRequest.to("health")).permitAll()
+                .requestMatchers(EndpointRequest.to("metrics", "prometheus")).access(metricsAccess)
+                .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN")
                 .requestMatchers("/api/auth/**").permitAll()
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/factories", "/api/departments").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/cases/**").permitAll()
                 .requestMatchers("/api/summary/**").permitAll()
@@ -34,6 +65,11 @@ public class SecurityConfig {
             )
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService, userPrincipalService),
+                UsernamePasswordAuthenticationFilter.class)
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
             );
 
         return http.build();
@@ -45,6 +81,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(CaseController.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(false);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
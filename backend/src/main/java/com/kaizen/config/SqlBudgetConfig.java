@@ -0,0 +1,29 @@
+package com.kaizen.config;
+
+import com.kaizen.sql.SqlStatementCounter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * SQLの実行回数をリクエストごとに数えるため、DataSource をラップする。
+ * 予算の確認は com.kaizen.sql.SqlBudgetFilter / SqlBudgetGuard で行う。
+ */
+@Configuration
+public class SqlBudgetConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlStatementCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    return SqlStatementCounter.wrap(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package com.kaizen.config;
+
+import com.kaizen.service.StatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 起動引数 --rebuild-statistics が指定された場合に統計集計を全件から再計算する。
+ * 例: java -jar kaizen-backend.jar --rebuild-statistics
+ */
+@Component
+public class StatisticsRebuildRunner implements ApplicationRunner {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("rebuild-statistics")) {
+            statisticsService.rebuild();
+        }
+    }
+}
@@ -1,23 +1,26 @@
 package com.kaizen.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.kaizen.storage.FileStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-    @Value("${file.upload.dir}")
-    private String uploadDir;
+    @Autowired
+    private FileStore fileStore;
 
+    // 通常は FileController が配信する。コントローラーに届かない場合の静的配信
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        String uploadPath = Paths.get(uploadDir).toAbsolutePath().toUri().toString();
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath + "/");
+        registry.addResourceHandler(FileStore.URL_PREFIX + "**")
+                .addResourceLocations(fileStore.getRoot().toUri().toString())
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
     }
 }
 
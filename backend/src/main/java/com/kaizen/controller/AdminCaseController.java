@@ -0,0 +1,65 @@
+package com.kaizen.controller;
+
+import com.kaizen.bulk.BulkFormat;
+import com.kaizen.bulk.CaseExportService;
+import com.kaizen.bulk.CaseImportResult;
+import com.kaizen.bulk.CaseImportService;
+import com.kaizen.sql.SqlBudget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+
+/**
+ * 事例の一括エクスポート・インポート（管理者のみ）。年次の報告用の集計や、表計算ソフトで管理していた
+ * 過去の事例の移行に使う。形式は format=ndjson（既定）か csv。
+ */
+@RestController
+@RequestMapping("/api/admin/cases")
+@CrossOrigin(origins = "*")
+public class AdminCaseController {
+
+    @Autowired
+    private CaseExportService caseExportService;
+
+    @Autowired
+    private CaseImportService caseImportService;
+
+    // 本文は別スレッドで COPY から書き出すため、リクエスト中に実行するSQLはない
+    @SqlBudget(statements = 0)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCases(
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) Long factoryId,
+            @RequestParam(required = false) Long departmentId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        BulkFormat bulkFormat = BulkFormat.fromParam(format);
+        StreamingResponseBody body = out -> caseExportService.export(out, bulkFormat, factoryId, departmentId, from, to);
+        return ResponseEntity.ok()
+            .contentType(bulkFormat.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("cases." + bulkFormat.getParam()).build().toString())
+            .body(body);
+    }
+
+    // 本文（NDJSON・CSV）を読みながら batch-size 件ごとに登録するため、SQLの数は件数に比例する
+    @SqlBudget(statements = SqlBudget.UNLIMITED)
+    @PostMapping("/import")
+    public ResponseEntity<CaseImportResult> importCases(
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body) throws IOException {
+        
+        BulkFormat bulkFormat = format != null ? BulkFormat.fromParam(format) : BulkFormat.fromContentType(contentType);
+        return ResponseEntity.ok(caseImportService.importCases(body, bulkFormat));
+    }
+}
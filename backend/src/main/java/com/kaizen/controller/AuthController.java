@@ -1,8 +1,13 @@
 package com.kaizen.controller;
 
 import com.kaizen.model.User;
+import com.kaizen.security.TokenService;
+import com.kaizen.service.AuthBusyException;
 import com.kaizen.service.AuthService;
+import com.kaizen.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,6 +22,10 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @SqlBudget(statements = 1)
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody Map<String, String> credentials) {
         String username = credentials.get("username");
@@ -24,9 +33,7 @@ public class AuthController {
         
         User user = authService.login(username, password);
         if (user != null) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("id", user.getId());
-            response.put("username", user.getUsername());
+            Map<String, Object> response = withToken(user);
             response.put("email", user.getEmail());
             response.put("isAdmin", user.getIsAdmin());
             return ResponseEntity.ok(response);
@@ -34,6 +41,7 @@ public class AuthController {
         return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
     }
 
+    @SqlBudget(statements = 2)
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody Map<String, String> userData) {
         String username = userData.get("username");
@@ -42,13 +50,27 @@ public class AuthController {
         
         User user = authService.register(username, password, email);
         if (user != null) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("id", user.getId());
-            response.put("username", user.getUsername());
+            Map<String, Object> response = withToken(user);
             response.put("email", user.getEmail());
             return ResponseEntity.ok(response);
         }
         return ResponseEntity.status(400).body(Map.of("error", "Username already exists"));
     }
-}
 
+    @ExceptionHandler(AuthBusyException.class)
+    public ResponseEntity<?> handleBusy(AuthBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("error", e.getMessage()));
+    }
+
+    private Map<String, Object> withToken(User user) {
+        TokenService.IssuedToken token = tokenService.issue(user.getId());
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", user.getId());
+        response.put("username", user.getUsername());
+        response.put("token", token.token());
+        response.put("expiresAt", token.expiresAt());
+        return response;
+    }
+}
@@ -1,16 +1,32 @@
 package com.kaizen.controller;
 
+import com.kaizen.datasource.ReplicaRouting;
+import com.kaizen.dto.CaseResponse;
+import com.kaizen.dto.CaseRow;
+import com.kaizen.dto.CaseVersion;
+import com.kaizen.dto.CommentResponse;
 import com.kaizen.model.*;
 import com.kaizen.repository.*;
-import com.kaizen.service.FileStorageService;
+import com.kaizen.security.UserPrincipal;
+import com.kaizen.service.CaseCacheService;
+import com.kaizen.service.CaseService;
+import com.kaizen.service.CaseStreamService;
+import com.kaizen.service.CommentService;
+import com.kaizen.service.LikeService;
+import com.kaizen.service.ViewCounterService;
+import com.kaizen.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,6 +35,10 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*")
 public class CaseController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ImprovementCaseRepository caseRepository;
 
@@ -26,230 +46,289 @@ public class CaseController {
     private CaseImageRepository imageRepository;
 
     @Autowired
-    private FactoryRepository factoryRepository;
+    private CommentRepository commentRepository;
 
     @Autowired
-    private DepartmentRepository departmentRepository;
+    private ViewCounterService viewCounterService;
 
     @Autowired
-    private UserRepository userRepository;
+    private LikeService likeService;
 
     @Autowired
-    private LikeRepository likeRepository;
+    private CommentService commentService;
 
     @Autowired
-    private CommentRepository commentRepository;
+    private CaseCacheService caseCacheService;
 
     @Autowired
-    private ViewLogRepository viewLogRepository;
+    private CaseStreamService caseStreamService;
 
     @Autowired
-    private FileStorageService fileStorageService;
+    private CaseService caseService;
 
+    // 一覧（関連度順は検索と本文の取得で2回）と画像パスの取得
+    @SqlBudget(statements = 3)
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getAllCases(
+    public ResponseEntity<List<CaseResponse>> getAllCases(
             @RequestParam(required = false) Long factoryId,
             @RequestParam(required = false) Long departmentId,
             @RequestParam(required = false) String keyword,
-            @RequestParam(required = false) String sortBy) {
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            WebRequest request) {
         
-        List<ImprovementCase> cases;
+        // キーワード検索で並び順の指定がない場合は関連度順
+        CaseSort sort = CaseSort.of(sortBy, keyword);
+        CaseCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = CaseCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (after.sort() != sort) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
         
-        if (keyword != null && !keyword.isEmpty()) {
-            cases = caseRepository.searchByKeyword(keyword);
-        } else if (factoryId != null && departmentId != null) {
-            cases = caseRepository.findByFactoryIdAndDepartmentId(factoryId, departmentId);
-        } else if (factoryId != null) {
-            cases = caseRepository.findByFactoryId(factoryId);
-        } else if (departmentId != null) {
-            cases = caseRepository.findByDepartmentId(departmentId);
+        // 次ページの有無を判定するため1件多く取得する
+        List<CaseRow> cases;
+        CaseCursor next = null;
+        if (sort == CaseSort.RELEVANCE) {
+            List<SearchHit> hits = caseRepository.searchPage(factoryId, departmentId, keyword, after, pageSize + 1);
+            if (hits.size() > pageSize) {
+                hits = hits.subList(0, pageSize);
+                next = CaseCursor.of(hits.get(pageSize - 1));
+            }
+            cases = caseRepository.findRowsByIds(hits.stream().map(SearchHit::id).collect(Collectors.toList()));
         } else {
-            cases = caseRepository.findAll();
+            cases = caseRepository.findPage(factoryId, departmentId, keyword, sort, after, pageSize + 1);
+            if (cases.size() > pageSize) {
+                cases = cases.subList(0, pageSize);
+                next = CaseCursor.of(sort, cases.get(pageSize - 1));
+            }
         }
         
-        if ("likes".equals(sortBy)) {
-            cases.sort((a, b) -> b.getLikeCount().compareTo(a.getLikeCount()));
-        } else if ("views".equals(sortBy)) {
-            cases.sort((a, b) -> b.getViewCount().compareTo(a.getViewCount()));
-        } else {
-            cases.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
+        String nextCursor = next != null ? next.encode() : null;
+        // ページの内容が変わっていなければ、画像パスの取得と応答の組み立て・直列化を省いて 304 を返す
+        if (request.checkNotModified(CaseVersion.etag(cases, nextCursor))) {
+            return null;
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
         }
         
-        return ResponseEntity.ok(cases.stream().map(this::caseToMap).collect(Collectors.toList()));
+        return response.body(toResponses(cases));
     }
 
+    // 管理・エクスポート向けの全件取得。DBカーソルから1件ずつ書き出す
+    // 本文は別スレッドで書き出すため、リクエスト中に実行するSQLはない
+    @SqlBudget(statements = 0)
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCases(
+            @RequestParam(required = false) Long factoryId,
+            @RequestParam(required = false) Long departmentId,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String sortBy) {
+        
+        // 並び順は一覧と同じ（キーワード検索で指定がない場合は関連度順）
+        CaseSort sort = CaseSort.of(sortBy, keyword);
+        StreamingResponseBody body = out -> caseStreamService.writeCases(out, factoryId, departmentId, keyword, sort);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @SqlBudget(statements = 2)
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getCase(@PathVariable Long id, @RequestParam(required = false) Long userId) {
-        Optional<ImprovementCase> caseOpt = caseRepository.findById(id);
-        if (caseOpt.isPresent()) {
-            ImprovementCase improvementCase = caseOpt.get();
-            
-            // 閲覧数カウント
-            if (userId != null) {
-                LocalDate today = LocalDate.now();
-                Optional<ViewLog> logOpt = viewLogRepository.findByImprovementCaseIdAndUserIdAndViewedDate(id, userId, today);
-                if (logOpt.isEmpty()) {
-                    ViewLog viewLog = new ViewLog();
-                    viewLog.setImprovementCase(improvementCase);
-                    viewLog.setUser(userRepository.findById(userId).orElse(null));
-                    viewLog.setViewedDate(today);
-                    viewLogRepository.save(viewLog);
-                    
-                    improvementCase.setViewCount(improvementCase.getViewCount() + 1);
-                    caseRepository.save(improvementCase);
-                }
-            }
-            
-            return ResponseEntity.ok(caseToMap(improvementCase));
+    public ResponseEntity<CaseResponse> getCase(@PathVariable Long id, @AuthenticationPrincipal UserPrincipal user,
+                                                WebRequest request) {
+        // キャッシュに入れる内容はレプリカの遅れた内容にならないようプライマリから読む
+        CaseResponse caseResponse = caseCacheService.get(id, () -> ReplicaRouting.primary(() ->
+            caseRepository.findRowById(id).map(this::toResponse).orElse(null)));
+        if (caseResponse == null) {
+            return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.notFound().build();
+        
+        // 閲覧数カウント（ログイン中のみ。定期的にまとめて書き込む）。304 を返す場合も数える
+        if (user != null) {
+            viewCounterService.recordView(id, user.id());
+        }
+        
+        // 変わっていなければ、応答の直列化を省いて 304 を返す
+        if (request.checkNotModified(CaseVersion.etag(caseResponse))) {
+            return null;
+        }
+        
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(caseResponse);
     }
 
+    // 画像ファイルの参照の追加は画像処理のスレッドで行うため含まない
+    @SqlBudget(statements = 7)
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createCase(
+    public ResponseEntity<?> createCase(
             @RequestParam String title,
             @RequestParam String description,
             @RequestParam Long factoryId,
             @RequestParam Long departmentId,
-            @RequestParam Long userId,
-            @RequestParam("images") MultipartFile[] images) {
+            @RequestParam("images") MultipartFile[] images,
+            @AuthenticationPrincipal UserPrincipal user) {
         
         try {
-            ImprovementCase improvementCase = new ImprovementCase();
-            improvementCase.setTitle(title);
-            improvementCase.setDescription(description);
-            improvementCase.setFactory(factoryRepository.findById(factoryId).orElseThrow());
-            improvementCase.setDepartment(departmentRepository.findById(departmentId).orElseThrow());
-            improvementCase.setUser(userRepository.findById(userId).orElseThrow());
-            
-            ImprovementCase savedCase = caseRepository.save(improvementCase);
-            
-            // 画像の保存
-            List<CaseImage> caseImages = new ArrayList<>();
-            for (int i = 0; i < images.length && i < 10; i++) {
-                String imagePath = fileStorageService.storeFile(images[i]);
-                CaseImage caseImage = new CaseImage();
-                caseImage.setImprovementCase(savedCase);
-                caseImage.setImagePath(imagePath);
-                caseImage.setImageOrder(i);
-                caseImages.add(imageRepository.save(caseImage));
-            }
-            
-            return ResponseEntity.ok(caseToMap(savedCase));
+            ImprovementCase savedCase = caseService.createCase(title, description, factoryId, departmentId, user.id(), images);
+            return ResponseEntity.ok(toResponse(CaseRow.from(savedCase, user.username())));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
 
+    @SqlBudget(statements = 7)
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateCase(
+    public ResponseEntity<CaseResponse> updateCase(
             @PathVariable Long id,
             @RequestParam(required = false) String title,
             @RequestParam(required = false) String description,
             @RequestParam(required = false) Long factoryId,
             @RequestParam(required = false) Long departmentId) {
         
-        Optional<ImprovementCase> caseOpt = caseRepository.findById(id);
-        if (caseOpt.isPresent()) {
-            ImprovementCase improvementCase = caseOpt.get();
-            if (title != null) improvementCase.setTitle(title);
-            if (description != null) improvementCase.setDescription(description);
-            if (factoryId != null) improvementCase.setFactory(factoryRepository.findById(factoryId).orElseThrow());
-            if (departmentId != null) improvementCase.setDepartment(departmentRepository.findById(departmentId).orElseThrow());
-            
-            return ResponseEntity.ok(caseToMap(caseRepository.save(improvementCase)));
+        Optional<CaseRow> updated = caseService.updateCase(id, title, description, factoryId, departmentId);
+        if (updated.isPresent()) {
+            caseCacheService.evict(id);
+            return ResponseEntity.ok(toResponse(updated.get()));
         }
         return ResponseEntity.notFound().build();
     }
 
+    // 画像ファイルの参照の解除（画像の枚数によらず3回）を含む
+    @SqlBudget(statements = 10)
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteCase(@PathVariable Long id) {
-        if (caseRepository.existsById(id)) {
-            caseRepository.deleteById(id);
+        if (caseService.deleteCase(id)) {
+            caseCacheService.evict(id);
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
     }
 
+    @SqlBudget(statements = 3)
     @PostMapping("/{id}/like")
-    public ResponseEntity<?> toggleLike(@PathVariable Long id, @RequestParam Long userId) {
-        Optional<Like> likeOpt = likeRepository.findByImprovementCaseIdAndUserId(id, userId);
-        ImprovementCase improvementCase = caseRepository.findById(id).orElseThrow();
-        
-        if (likeOpt.isPresent()) {
-            likeRepository.delete(likeOpt.get());
-            improvementCase.setLikeCount(Math.max(0, improvementCase.getLikeCount() - 1));
-        } else {
-            Like like = new Like();
-            like.setImprovementCase(improvementCase);
-            like.setUser(userRepository.findById(userId).orElseThrow());
-            likeRepository.save(like);
-            improvementCase.setLikeCount(improvementCase.getLikeCount() + 1);
-        }
-        caseRepository.save(improvementCase);
-        return ResponseEntity.ok(Map.of("likeCount", improvementCase.getLikeCount()));
+    public ResponseEntity<?> toggleLike(@PathVariable Long id, @AuthenticationPrincipal UserPrincipal user) {
+        Optional<LikeService.LikeResult> result = likeService.toggle(id, user.id());
+        caseCacheService.evict(id);
+        if (result.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of(
+            "likeCount", result.get().likeCount(),
+            "liked", result.get().liked()));
     }
 
+    // 投稿日時順に1ページ分。次ページがあれば X-Next-Cursor を返す
+    @SqlBudget(statements = 1)
     @GetMapping("/{id}/comments")
-    public ResponseEntity<List<Map<String, Object>>> getComments(@PathVariable Long id) {
-        List<Comment> comments = commentRepository.findByImprovementCaseIdOrderByCreatedAtAsc(id);
-        return ResponseEntity.ok(comments.stream().map(comment -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", comment.getId());
-            map.put("content", comment.getContent());
-            map.put("userId", comment.getUser().getId());
-            map.put("username", comment.getUser().getUsername());
-            map.put("createdAt", comment.getCreatedAt());
-            return map;
-        }).collect(Collectors.toList()));
+    public ResponseEntity<List<CommentResponse>> getComments(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        CommentCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = CommentCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // 次ページの有無を判定するため1件多く取得する
+        List<CommentResponse> comments = after == null
+            ? commentRepository.findFirstPage(id, Limit.of(pageSize + 1))
+            : commentRepository.findPageAfter(id, after.createdAt(), after.id(), Limit.of(pageSize + 1));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (comments.size() > pageSize) {
+            comments = comments.subList(0, pageSize);
+            response.header(NEXT_CURSOR_HEADER, CommentCursor.of(comments.get(pageSize - 1)).encode());
+        }
+        return response.body(comments);
     }
 
+    // コメントの追加とコメント数の加算（1ステートメント）、統計集計の更新
+    @SqlBudget(statements = 2)
     @PostMapping("/{id}/comments")
-    public ResponseEntity<Map<String, Object>> addComment(
+    public ResponseEntity<CommentResponse> addComment(
             @PathVariable Long id,
             @RequestParam String content,
-            @RequestParam Long userId) {
-        
-        Comment comment = new Comment();
-        comment.setImprovementCase(caseRepository.findById(id).orElseThrow());
-        comment.setUser(userRepository.findById(userId).orElseThrow());
-        comment.setContent(content);
-        Comment savedComment = commentRepository.save(comment);
-        
-        ImprovementCase improvementCase = caseRepository.findById(id).orElseThrow();
-        improvementCase.setCommentCount((int) commentRepository.countByImprovementCaseId(id));
-        caseRepository.save(improvementCase);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("id", savedComment.getId());
-        response.put("content", savedComment.getContent());
-        response.put("userId", savedComment.getUser().getId());
-        response.put("username", savedComment.getUser().getUsername());
-        response.put("createdAt", savedComment.getCreatedAt());
-        return ResponseEntity.ok(response);
+            @AuthenticationPrincipal UserPrincipal user) {
+        Optional<CommentResponse> comment = commentService.add(id, user.id(), user.username(), content);
+        if (comment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        caseCacheService.evict(id);
+        return ResponseEntity.ok(comment.get());
     }
 
-    private Map<String, Object> caseToMap(ImprovementCase improvementCase) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", improvementCase.getId());
-        map.put("title", improvementCase.getTitle());
-        map.put("description", improvementCase.getDescription());
-        map.put("factoryId", improvementCase.getFactory().getId());
-        map.put("factoryName", improvementCase.getFactory().getName());
-        map.put("departmentId", improvementCase.getDepartment().getId());
-        map.put("departmentName", improvementCase.getDepartment().getName());
-        map.put("userId", improvementCase.getUser().getId());
-        map.put("username", improvementCase.getUser().getUsername());
-        map.put("viewCount", improvementCase.getViewCount());
-        map.put("likeCount", improvementCase.getLikeCount());
-        map.put("commentCount", improvementCase.getCommentCount());
-        map.put("createdAt", improvementCase.getCreatedAt());
-        map.put("updatedAt", improvementCase.getUpdatedAt());
-        
-        List<CaseImage> images = imageRepository.findByImprovementCaseIdOrderByImageOrderAsc(improvementCase.getId());
-        map.put("images", images.stream().map(CaseImage::getImagePath).collect(Collectors.toList()));
-        
-        return map;
+    // 編集できなかった場合だけ、404 と 403 を区別するために存在を確認する
+    @SqlBudget(statements = 2)
+    @PutMapping("/{id}/comments/{commentId}")
+    public ResponseEntity<CommentResponse> editComment(
+            @PathVariable Long id,
+            @PathVariable Long commentId,
+            @RequestParam String content,
+            @AuthenticationPrincipal UserPrincipal user) {
+        Optional<CommentResponse> comment = commentService.edit(id, commentId, user.id(), user.username(), content);
+        if (comment.isPresent()) {
+            return ResponseEntity.ok(comment.get());
+        }
+        return commentService.exists(id, commentId)
+            ? ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+            : ResponseEntity.notFound().build();
+    }
+
+    // コメントの削除とコメント数の減算（1ステートメント）、統計集計の更新
+    @SqlBudget(statements = 2)
+    @DeleteMapping("/{id}/comments/{commentId}")
+    public ResponseEntity<?> deleteComment(
+            @PathVariable Long id,
+            @PathVariable Long commentId,
+            @AuthenticationPrincipal UserPrincipal user) {
+        if (commentService.delete(id, commentId, user.id())) {
+            caseCacheService.evict(id);
+            return ResponseEntity.ok().build();
+        }
+        return commentService.exists(id, commentId)
+            ? ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+            : ResponseEntity.notFound().build();
+    }
+
+    private CaseResponse toResponse(CaseRow row) {
+        return toResponses(List.of(row)).get(0);
     }
-}
 
+    // 画像パスはIN句でまとめて取得し、事例ごとのクエリ発行を避ける
+    private List<CaseResponse> toResponses(List<CaseRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> caseIds = new ArrayList<>(rows.size());
+        for (CaseRow row : rows) {
+            caseIds.add(row.id());
+        }
+        Map<Long, List<String>> imagesByCase = new HashMap<>();
+        Map<Long, List<String>> thumbnailsByCase = new HashMap<>();
+        for (CaseImageRepository.ImagePathView image : imageRepository.findImagePathsByCaseIds(caseIds)) {
+            imagesByCase.computeIfAbsent(image.getCaseId(), k -> new ArrayList<>()).add(image.getImagePath());
+            // サムネイル未生成の過去画像は元画像を使う
+            String thumbnail = image.getThumbnailPath() != null ? image.getThumbnailPath() : image.getImagePath();
+            thumbnailsByCase.computeIfAbsent(image.getCaseId(), k -> new ArrayList<>()).add(thumbnail);
+        }
+        List<CaseResponse> responses = new ArrayList<>(rows.size());
+        for (CaseRow row : rows) {
+            responses.add(CaseResponse.of(row,
+                imagesByCase.getOrDefault(row.id(), List.of()),
+                thumbnailsByCase.getOrDefault(row.id(), List.of())));
+        }
+        return responses;
+    }
+}
@@ -2,6 +2,7 @@ package com.kaizen.controller;
 
 import com.kaizen.model.Department;
 import com.kaizen.repository.DepartmentRepository;
+import com.kaizen.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ public class DepartmentController {
     @Autowired
     private DepartmentRepository departmentRepository;
 
+    @SqlBudget(statements = 1)
     @GetMapping
     public ResponseEntity<List<Department>> getDepartments(@RequestParam(required = false) Long factoryId) {
         if (factoryId != null) {
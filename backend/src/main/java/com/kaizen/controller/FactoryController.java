@@ -2,6 +2,7 @@ package com.kaizen.controller;
 
 import com.kaizen.model.Factory;
 import com.kaizen.repository.FactoryRepository;
+import com.kaizen.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ public class FactoryController {
     @Autowired
     private FactoryRepository factoryRepository;
 
+    @SqlBudget(statements = 1)
     @GetMapping
     public ResponseEntity<List<Factory>> getAllFactories() {
         return ResponseEntity.ok(factoryRepository.findAll());
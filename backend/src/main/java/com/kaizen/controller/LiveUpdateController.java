@@ -0,0 +1,57 @@
+package com.kaizen.controller;
+
+import com.kaizen.live.LiveUpdateService;
+import com.kaizen.sql.SqlBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 件数・コメントの変更を Server-Sent Events で配信する。接続中にDB接続は使わない。
+ */
+@RestController
+@RequestMapping("/api/cases")
+@CrossOrigin(origins = "*")
+public class LiveUpdateController {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveUpdateController.class);
+
+    @Autowired
+    private LiveUpdateService liveUpdateService;
+
+    // 一覧の件数（閲覧数・いいね数・コメント数）の増減
+    @SqlBudget(statements = 0)
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeCases() {
+        return toEventStream(liveUpdateService.subscribe(null));
+    }
+
+    // 事例の件数の増減とコメントの追加・編集・削除
+    @SqlBudget(statements = 0)
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeCase(@PathVariable Long id) {
+        return toEventStream(liveUpdateService.subscribe(id));
+    }
+
+    // 送信中にクライアントが切断した場合。通常の切断のためエラーとして扱わない
+    @ExceptionHandler(IOException.class)
+    public void handleDisconnect(IOException e) {
+        log.debug("Live update client disconnected: {}", e.getMessage());
+    }
+
+    private ResponseEntity<SseEmitter> toEventStream(SseEmitter emitter) {
+        if (emitter == null) {
+            // 接続数の上限。EventSource は自動では再接続しないため、画面側で時間を置いて接続し直す
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        // 前段のプロキシ（nginx）にバッファさせない
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+}
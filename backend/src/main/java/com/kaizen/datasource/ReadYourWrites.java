@@ -0,0 +1,47 @@
+package com.kaizen.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 利用者ごとの最後の書き込み（コミット）時刻。書き込んだ利用者の読み取りは、その時刻までの変更を
+ * 反映済みのレプリカ（なければプライマリ）に回し、自分のいいね・コメント・投稿が見えない状態を避ける。
+ * レプリカは遅れが max-lag 以内のものしか使わないため、記録は max-lag だけ保持すれば足りる。
+ */
+public class ReadYourWrites {
+
+    private final Cache<Long, Long> lastWrites;
+
+    public ReadYourWrites(Duration maxLag, long maxUsers) {
+        this.lastWrites = Caffeine.newBuilder()
+            .maximumSize(maxUsers)
+            .expireAfterWrite(maxLag)
+            .build();
+    }
+
+    /**
+     * 実行中の書き込みトランザクションがコミットされたら、その時刻を記録する。
+     */
+    void trackCommit(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWrites.put(userId, System.nanoTime());
+            }
+        });
+    }
+
+    /**
+     * 最後の書き込み時刻（System.nanoTime）。記録がなければ null。
+     */
+    Long lastWrite(Long userId) {
+        return lastWrites.getIfPresent(userId);
+    }
+}
@@ -0,0 +1,210 @@
+package com.kaizen.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * レプリカの遅れの監視と、読み取りに使うレプリカの選択。
+ * 定期的にプライマリのWAL位置を記録し、各レプリカが適用済みの位置と比べて「いつの時点のプライマリまで
+ * 反映済みか」を求める。反映済みの時点が max-lag より古いレプリカ、応答しないレプリカは使わない。
+ * スタンバイでないDB（ローカルでレプリカの代わりに立てた別インスタンスなど）は常に最新とみなす。
+ *
+ * 確認は専用のスレッドで行い、各SQLにタイムアウトを付ける。応答しないDBがあっても @Scheduled の共有スレッド
+ * （閲覧数の書き込みなど）を止めず、確認が止まっている間は反映済みの時点が古くなってレプリカが使われなくなる。
+ */
+public class ReplicaMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagNanos;
+    private final int checkTimeoutSeconds;
+    // プライマリのWAL位置の記録（古い順）。max-lag より古いものは捨てる
+    private final Deque<long[]> samples = new ArrayDeque<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaMonitor(DataSource primary, List<Replica> replicas, Duration maxLag, Duration checkTimeout,
+                          MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagNanos = maxLag.toNanos();
+        // setQueryTimeout は秒単位
+        this.checkTimeoutSeconds = (int) Math.max(1, (checkTimeout.toMillis() + 999) / 1000);
+        for (Replica replica : this.replicas) {
+            Gauge.builder("kaizen.datasource.replica.lag", replica, this::lagSeconds)
+                .description("How far the replica is behind the primary (NaN while unavailable)")
+                .baseUnit("seconds")
+                .tag("replica", replica.name())
+                .register(meterRegistry);
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * interval ごとの確認を始める（前回の確認が終わってから interval 後に次を行う）。
+     */
+    public void start(Duration interval) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (RuntimeException e) {
+                // 例外で定期実行が止まらないようにする
+                log.warn("Replica check failed", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    void check() {
+        long sampledAt = System.nanoTime();
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(checkTimeoutSeconds);
+            try (ResultSet rs = statement.executeQuery("SELECT pg_current_wal_lsn()::text")) {
+                rs.next();
+                samples.addLast(new long[]{sampledAt, parseLsn(rs.getString(1))});
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read the WAL position of the primary: {}", e.getMessage());
+            return;
+        }
+        while (samples.size() > 1 && sampledAt - samples.peekFirst()[0] > maxLagNanos) {
+            samples.removeFirst();
+        }
+        for (Replica replica : replicas) {
+            checkReplica(replica, sampledAt);
+        }
+    }
+
+    private void checkReplica(Replica replica, long sampledAt) {
+        String replayLsn;
+        try (Connection connection = replica.dataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(checkTimeoutSeconds);
+            try (ResultSet rs = statement.executeQuery("SELECT pg_last_wal_replay_lsn()::text")) {
+                rs.next();
+                replayLsn = rs.getString(1);
+            }
+        } catch (SQLException e) {
+            if (replica.available) {
+                log.warn("Replica {} is unavailable: {}", replica.name(), e.getMessage());
+            }
+            replica.available = false;
+            return;
+        }
+
+        if (replayLsn == null) {
+            if (!replica.standalone) {
+                log.warn("Replica {} is not a standby; treating it as always up to date", replica.name());
+                replica.standalone = true;
+            }
+            replica.freshAsOf = sampledAt;
+        } else {
+            // 適用済みの位置までに記録した中で最も新しい時点まで反映済み
+            long replayed = parseLsn(replayLsn);
+            Iterator<long[]> newestFirst = samples.descendingIterator();
+            while (newestFirst.hasNext()) {
+                long[] sample = newestFirst.next();
+                if (sample[1] <= replayed) {
+                    replica.freshAsOf = Math.max(replica.freshAsOf, sample[0]);
+                    break;
+                }
+            }
+        }
+        if (!replica.available && replica.freshAsOf != 0) {
+            log.info("Replica {} is available", replica.name());
+            replica.available = true;
+        }
+    }
+
+    /**
+     * 遅れが max-lag 以内で、notBefore（System.nanoTime、null は指定なし）の時点まで反映済みのレプリカを
+     * 順番に選ぶ。該当するものがなければ null（プライマリを使う）。
+     */
+    Replica select(Long notBefore) {
+        long now = System.nanoTime();
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            long freshAsOf = replica.freshAsOf;
+            if (replica.available && now - freshAsOf <= maxLagNanos
+                    && (notBefore == null || freshAsOf - notBefore >= 0)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private double lagSeconds(Replica replica) {
+        if (!replica.available) {
+            return Double.NaN;
+        }
+        return (double) (System.nanoTime() - replica.freshAsOf) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    // "16/B374D848" 形式のWAL位置を64ビットの値にする
+    static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return (Long.parseLong(lsn.substring(0, slash), 16) << 32) | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    /**
+     * 1台のレプリカと、最後に確認した反映済みの時点。
+     */
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile long freshAsOf;
+        private volatile boolean available;
+        private volatile boolean standalone;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+    }
+}
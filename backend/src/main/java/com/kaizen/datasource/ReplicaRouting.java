@@ -0,0 +1,32 @@
+package com.kaizen.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * 読み取り専用トランザクションでもプライマリから読ませる範囲の指定。
+ * 読んだ内容をキャッシュに入れる場合など、レプリカの遅れた内容を残したくない読み取りに使う。
+ * レプリカを設定していない場合は何もしない。
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    public static <T> T primary(Supplier<T> action) {
+        if (Boolean.TRUE.equals(PRIMARY.get())) {
+            return action.get();
+        }
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY.remove();
+        }
+    }
+
+    static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+}
@@ -0,0 +1,81 @@
+package com.kaizen.datasource;
+
+import com.kaizen.security.UserPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 読み取り専用トランザクション（@Transactional(readOnly = true)、リポジトリの検索メソッド）の接続をレプリカに、
+ * それ以外をプライマリに振り分ける。トランザクションの属性が決まってから接続を選ぶよう、
+ * LazyConnectionDataSourceProxy で包んで使う（最初のSQLの実行時に選ばれる）。
+ *
+ * 書き込んだ利用者の読み取りは、その書き込みを反映済みのレプリカにだけ回す（{@link ReadYourWrites}）。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaMonitor monitor;
+    private final ReadYourWrites readYourWrites;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaMonitor monitor, ReadYourWrites readYourWrites,
+                                    MeterRegistry meterRegistry) {
+        this.monitor = monitor;
+        this.readYourWrites = readYourWrites;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaMonitor.Replica replica : monitor.getReplicas()) {
+            targets.put(replica.name(), replica.dataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        replicaReads = readCounter(meterRegistry, "replica");
+        primaryReads = readCounter(meterRegistry, PRIMARY);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (userId != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.trackCommit(userId);
+            }
+            return PRIMARY;
+        }
+        if (!ReplicaRouting.isPrimaryRequired()) {
+            ReplicaMonitor.Replica replica = monitor.select(userId != null ? readYourWrites.lastWrite(userId) : null);
+            if (replica != null) {
+                replicaReads.increment();
+                return replica.name();
+            }
+        }
+        primaryReads.increment();
+        return PRIMARY;
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal user) {
+            return user.id();
+        }
+        return null;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("kaizen.datasource.reads")
+            .description("Read-only transactions by the data source that served them")
+            .tag("target", target)
+            .register(meterRegistry);
+    }
+}
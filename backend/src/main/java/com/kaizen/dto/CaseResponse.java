@@ -0,0 +1,34 @@
+package com.kaizen.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record CaseResponse(
+        Long id,
+        String title,
+        String description,
+        Long factoryId,
+        String factoryName,
+        Long departmentId,
+        String departmentName,
+        Long userId,
+        String username,
+        Integer viewCount,
+        Integer likeCount,
+        Integer commentCount,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        List<String> images,
+        List<String> thumbnails) {
+
+    public static CaseResponse of(CaseRow row, List<String> images, List<String> thumbnails) {
+        return new CaseResponse(
+            row.id(), row.title(), row.description(),
+            row.factoryId(), row.factoryName(),
+            row.departmentId(), row.departmentName(),
+            row.userId(), row.username(),
+            row.viewCount(), row.likeCount(), row.commentCount(),
+            row.createdAt(), row.updatedAt(),
+            List.copyOf(images), List.copyOf(thumbnails));
+    }
+}
@@ -0,0 +1,40 @@
+package com.kaizen.dto;
+
+import com.kaizen.model.ImprovementCase;
+
+import java.time.LocalDateTime;
+
+/**
+ * 事例一覧・詳細の1行分（画像以外）。JPQLのコンストラクタ式から直接生成する。
+ */
+public record CaseRow(
+        Long id,
+        String title,
+        String description,
+        Long factoryId,
+        String factoryName,
+        Long departmentId,
+        String departmentName,
+        Long userId,
+        String username,
+        Integer viewCount,
+        Integer likeCount,
+        Integer commentCount,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static CaseRow from(ImprovementCase c) {
+        return from(c, c.getUser().getUsername());
+    }
+
+    // 投稿者名が分かっている場合（ログイン中の利用者の投稿）は利用者を読み込まずに組み立てる
+    public static CaseRow from(ImprovementCase c, String username) {
+        return new CaseRow(
+            c.getId(), c.getTitle(), c.getDescription(),
+            c.getFactory().getId(), c.getFactory().getName(),
+            c.getDepartment().getId(), c.getDepartment().getName(),
+            c.getUser().getId(), username,
+            c.getViewCount(), c.getLikeCount(), c.getCommentCount(),
+            c.getCreatedAt(), c.getUpdatedAt());
+    }
+}
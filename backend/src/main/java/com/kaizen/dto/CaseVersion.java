@@ -0,0 +1,68 @@
+package com.kaizen.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 事例一覧・詳細の ETag。事例の版は更新日時と件数（閲覧数・いいね数・コメント数）から作り、
+ * 一覧の版はページ内の事例の版と次ページのカーソルのハッシュとする。
+ * 画像は投稿時にしか変わらず、投稿者名・工場名・係名は事例の移動でしか変わらない（移動では更新日時が変わる）ため含めない。
+ */
+public final class CaseVersion {
+
+    // 応答の形式を変えた場合は上げて、クライアントが持つ古い応答を使わせない
+    private static final String FORMAT = "1";
+
+    private CaseVersion() {
+    }
+
+    private static String of(CaseRow row) {
+        return version(row.id(), row.updatedAt(), row.viewCount(), row.likeCount(), row.commentCount());
+    }
+
+    private static String of(CaseResponse response) {
+        return version(response.id(), response.updatedAt(),
+            response.viewCount(), response.likeCount(), response.commentCount());
+    }
+
+    public static String etag(CaseResponse response) {
+        return quote(of(response));
+    }
+
+    /**
+     * 一覧の1ページ分の ETag。nextCursor は次ページがない場合 null。
+     */
+    public static String etag(List<CaseRow> rows, String nextCursor) {
+        MessageDigest digest = sha256();
+        digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+        for (CaseRow row : rows) {
+            digest.update((";" + of(row)).getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((";" + nextCursor).getBytes(StandardCharsets.UTF_8));
+        // 衝突しにくさは128ビットで足りる
+        return quote("l" + HexFormat.of().formatHex(digest.digest(), 0, 16));
+    }
+
+    private static String version(Long id, LocalDateTime updatedAt, Integer views, Integer likes, Integer comments) {
+        // DBはマイクロ秒までしか保持しないため、どちらから作っても同じ値になるように揃える
+        LocalDateTime updated = updatedAt != null ? updatedAt.truncatedTo(ChronoUnit.MICROS) : null;
+        return FORMAT + "-" + id + "-" + updated + "-" + views + "-" + likes + "-" + comments;
+    }
+
+    private static String quote(String version) {
+        return "\"" + version + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
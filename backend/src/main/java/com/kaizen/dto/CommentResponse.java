@@ -0,0 +1,20 @@
+package com.kaizen.dto;
+
+import com.kaizen.model.Comment;
+
+import java.time.LocalDateTime;
+
+public record CommentResponse(
+        Long id,
+        String content,
+        Long userId,
+        String username,
+        LocalDateTime createdAt) {
+
+    public static CommentResponse from(Comment comment) {
+        return new CommentResponse(
+            comment.getId(), comment.getContent(),
+            comment.getUser().getId(), comment.getUser().getUsername(),
+            comment.getCreatedAt());
+    }
+}
@@ -0,0 +1,15 @@
+package com.kaizen.dto;
+
+/**
+ * 今月のTOP閲覧記事。viewCount は今月の閲覧数、totalViewCount は累計。
+ */
+public record TopViewedCaseResponse(
+        Long id,
+        String title,
+        Integer viewCount,
+        Integer totalViewCount,
+        Integer likeCount,
+        Integer commentCount,
+        String factoryName,
+        String departmentName) {
+}
@@ -0,0 +1,76 @@
+package com.kaizen.live;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.kaizen.dto.CommentResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事例の閲覧数・いいね数・コメント数の増減と、追加・編集・削除されたコメント。
+ * 更新系の処理がコミット後に発行し、{@link LiveUpdateService} が短い間隔でまとめて配信する。
+ * 件数は差分のため、クライアントは表示中の値に加算する。
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record CaseActivity(
+        Long caseId,
+        int views,
+        int likes,
+        int comments,
+        List<CommentResponse> upsertedComments,
+        List<Long> deletedComments,
+        boolean reload) {
+
+    // 1回の配信に含めるコメント本文の上限。超えた場合は reload でクライアントに取り直させる
+    static final int MAX_COMMENTS = 20;
+
+    public static CaseActivity views(Long caseId, int views) {
+        return new CaseActivity(caseId, views, 0, 0, List.of(), List.of(), false);
+    }
+
+    public static CaseActivity likes(Long caseId, int likes) {
+        return new CaseActivity(caseId, 0, likes, 0, List.of(), List.of(), false);
+    }
+
+    public static CaseActivity commentAdded(Long caseId, CommentResponse comment) {
+        return new CaseActivity(caseId, 0, 0, 1, List.of(comment), List.of(), false);
+    }
+
+    public static CaseActivity commentEdited(Long caseId, CommentResponse comment) {
+        return new CaseActivity(caseId, 0, 0, 0, List.of(comment), List.of(), false);
+    }
+
+    public static CaseActivity commentDeleted(Long caseId, Long commentId) {
+        return new CaseActivity(caseId, 0, 0, -1, List.of(), List.of(commentId), false);
+    }
+
+    /**
+     * 同じ事例の後続の変更をまとめる。同じコメントの変更は後のものを残す。
+     */
+    public CaseActivity merge(CaseActivity next) {
+        List<CommentResponse> upserted = new ArrayList<>(upsertedComments);
+        List<Long> deleted = new ArrayList<>(deletedComments);
+        for (CommentResponse comment : next.upsertedComments) {
+            upserted.removeIf(c -> c.id().equals(comment.id()));
+            upserted.add(comment);
+        }
+        for (Long id : next.deletedComments) {
+            upserted.removeIf(c -> c.id().equals(id));
+            deleted.add(id);
+        }
+        boolean overflow = reload || next.reload || upserted.size() + deleted.size() > MAX_COMMENTS;
+        return new CaseActivity(caseId, views + next.views, likes + next.likes, comments + next.comments,
+            overflow ? List.of() : upserted, overflow ? List.of() : deleted, overflow);
+    }
+
+    /**
+     * 一覧向けに件数だけを残す。
+     */
+    public CaseActivity counters() {
+        return new CaseActivity(caseId, views, likes, comments, List.of(), List.of(), false);
+    }
+
+    boolean hasCounters() {
+        return views != 0 || likes != 0 || comments != 0;
+    }
+}
@@ -0,0 +1,275 @@
+package com.kaizen.live;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事例の件数・コメントの変更を Server-Sent Events で配信する。
+ * 変更（{@link CaseActivity}）はコミット後に受け取って事例ごとにまとめ、live.coalesce-ms ごとに
+ * 一覧の購読者には件数の配列を、事例の購読者にはその事例の変更を送る。JSONは配信ごとに1回だけ作る。
+ *
+ * 書き込みは購読者ごとに1つずつ、専用の実行器（仮想スレッド live.writer-threads 本と長さ live.writer-queue-size の待ち行列）で行う。
+ * 送信はソケットへの書き込みで止まることがあるため、アプリケーションのタスク実行スレッドとは分け、
+ * spring.threads.virtual.enabled によらず受信が遅い接続が他の購読者への配信や @Async の処理を止めないようにする。
+ * 受信が遅く未送信が live.max-pending を超えた購読者と、待ち行列があふれたときの購読者は切断し、再接続時に取り直してもらう。
+ * 無通信のプロキシで切られないよう、live.heartbeat-ms ごとにコメント行を送る。
+ */
+@Service
+public class LiveUpdateService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveUpdateService.class);
+
+    private static final String EVENT = "update";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${live.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${live.max-pending:16}")
+    private int maxPending;
+
+    @Value("${live.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${live.writer-threads:1000}")
+    private int writerThreads;
+
+    @Value("${live.writer-queue-size:10000}")
+    private int writerQueueSize;
+
+    private final Map<Long, CaseActivity> pending = new ConcurrentHashMap<>();
+    private final Set<Subscriber> feedSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Subscriber>> caseSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private Counter droppedSubscribers;
+    private ThreadPoolExecutor writer;
+
+    @PostConstruct
+    public void init() {
+        // 仮想スレッドのため遅い接続の書き込みで止まってもOSのスレッドは占有しない。使わないスレッドは終わらせる
+        writer = new ThreadPoolExecutor(writerThreads, writerThreads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(writerQueueSize), Thread.ofVirtual().name("live-writer-", 0).factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+        writer.allowCoreThreadTimeOut(true);
+        ExecutorServiceMetrics.monitor(meterRegistry, writer, "live.writer", Collections.emptyList());
+        Gauge.builder("kaizen.live.subscribers", subscriberCount, AtomicInteger::get)
+            .description("Open live update connections")
+            .register(meterRegistry);
+        droppedSubscribers = Counter.builder("kaizen.live.dropped")
+            .description("Live update connections closed because the client fell behind")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 購読を開始する。caseId が null の場合は一覧（全事例の件数）を購読する。
+     * 購読者数が上限に達している場合は null を返す。
+     */
+    public SseEmitter subscribe(Long caseId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(emitter, caseId);
+        if (caseId == null) {
+            feedSubscribers.add(subscriber);
+        } else {
+            // 最後の購読者の解除と競合しないよう、集合の作成と追加を同じ compute 内で行う
+            caseSubscribers.compute(caseId, (k, subscribers) -> {
+                Set<Subscriber> group = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                group.add(subscriber);
+                return group;
+            });
+        }
+        emitter.onCompletion(subscriber::remove);
+        emitter.onTimeout(subscriber::remove);
+        emitter.onError(e -> subscriber.remove());
+        // 接続直後に応答ヘッダーを送り、プロキシやブラウザに接続の確立を知らせる
+        subscriber.offer(SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(CaseActivity activity) {
+        pending.merge(activity.caseId(), activity, CaseActivity::merge);
+    }
+
+    @Scheduled(fixedDelayString = "${live.coalesce-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<CaseActivity> batch = new ArrayList<>(pending.size());
+        for (Long caseId : pending.keySet()) {
+            CaseActivity activity = pending.remove(caseId);
+            if (activity != null) {
+                batch.add(activity);
+            }
+        }
+
+        try {
+            if (!feedSubscribers.isEmpty()) {
+                List<CaseActivity> counters = new ArrayList<>(batch.size());
+                for (CaseActivity activity : batch) {
+                    if (activity.hasCounters()) {
+                        counters.add(activity.counters());
+                    }
+                }
+                if (!counters.isEmpty()) {
+                    broadcast(feedSubscribers, objectMapper.writeValueAsString(counters));
+                }
+            }
+            for (CaseActivity activity : batch) {
+                Set<Subscriber> subscribers = caseSubscribers.get(activity.caseId());
+                if (subscribers != null && !subscribers.isEmpty()) {
+                    broadcast(subscribers, objectMapper.writeValueAsString(List.of(activity)));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize live updates", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${live.heartbeat-ms:25000}")
+    public void heartbeat() {
+        feedSubscribers.forEach(Subscriber::heartbeat);
+        caseSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        feedSubscribers.forEach(s -> s.emitter.complete());
+        caseSubscribers.values().forEach(subscribers -> subscribers.forEach(s -> s.emitter.complete()));
+        writer.shutdownNow();
+    }
+
+    private void broadcast(Set<Subscriber> subscribers, String json) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().name(EVENT).data(json));
+        }
+    }
+
+    /**
+     * 1つの接続。未送信のイベントを順に書き出し、同時に書き込むのは1スレッドだけにする。
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Long caseId;
+        private final Queue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger outboxSize = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Long caseId) {
+            this.emitter = emitter;
+            this.caseId = caseId;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (removed.get()) {
+                return;
+            }
+            if (outboxSize.incrementAndGet() > maxPending) {
+                // 受信が追いつかない接続は切断する（クライアントは再接続して取り直す）
+                drop();
+                return;
+            }
+            outbox.add(event);
+            schedule();
+        }
+
+        private void drop() {
+            droppedSubscribers.increment();
+            remove();
+            emitter.complete();
+        }
+
+        void heartbeat() {
+            // 送信待ちがある接続はそれ自体が通信になるため送らない
+            if (outboxSize.get() == 0) {
+                offer(SseEmitter.event().comment(""));
+            }
+        }
+
+        private void schedule() {
+            if (!outbox.isEmpty() && sending.compareAndSet(false, true)) {
+                try {
+                    writer.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // 書き込み待ちがあふれている（遅い接続が書き込みスレッドを使い切っている）
+                    sending.set(false);
+                    drop();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!removed.get() && (event = outbox.poll()) != null) {
+                    outboxSize.decrementAndGet();
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 切断済み・完了済みの接続
+                remove();
+            } finally {
+                sending.set(false);
+            }
+            schedule();
+        }
+
+        void remove() {
+            if (!removed.compareAndSet(false, true)) {
+                return;
+            }
+            subscriberCount.decrementAndGet();
+            if (caseId == null) {
+                feedSubscribers.remove(this);
+            } else {
+                caseSubscribers.computeIfPresent(caseId, (k, subscribers) -> {
+                    subscribers.remove(this);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }
+            outbox.clear();
+        }
+    }
+}
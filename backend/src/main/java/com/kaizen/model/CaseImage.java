@@ -6,8 +6,10 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "case_images")
 public class CaseImage {
+    // 複数枚をまとめてINSERTできるよう、IDENTITY ではなくシーケンスから50件ずつ採番する
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "case_images_id_seq")
+    @SequenceGenerator(name = "case_images_id_seq", sequenceName = "case_images_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -17,6 +19,12 @@ public class CaseImage {
     @Column(name = "image_path", nullable = false, length = 500)
     private String imagePath;
 
+    @Column(name = "medium_path", length = 500)
+    private String mediumPath;
+
+    @Column(name = "thumbnail_path", length = 500)
+    private String thumbnailPath;
+
     @Column(name = "image_order")
     private Integer imageOrder = 0;
 
@@ -53,6 +61,22 @@ public class CaseImage {
         this.imagePath = imagePath;
     }
 
+    public String getMediumPath() {
+        return mediumPath;
+    }
+
+    public void setMediumPath(String mediumPath) {
+        this.mediumPath = mediumPath;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
     public Integer getImageOrder() {
         return imageOrder;
     }
@@ -1,6 +1,9 @@
 package com.kaizen.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -29,13 +32,14 @@ public class ImprovementCase {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(name = "view_count")
+    // カウンターはSQLで加減算するため、エンティティの更新では書き戻さない
+    @Column(name = "view_count", updatable = false)
     private Integer viewCount = 0;
 
-    @Column(name = "like_count")
+    @Column(name = "like_count", updatable = false)
     private Integer likeCount = 0;
 
-    @Column(name = "comment_count")
+    @Column(name = "comment_count", updatable = false)
     private Integer commentCount = 0;
 
     @Column(name = "created_at")
@@ -44,6 +48,11 @@ public class ImprovementCase {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // キーワード検索用の語の集合（DBの生成列）。検索条件でのみ参照し、読み書きはしない
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "search_grams", insertable = false, updatable = false)
+    private String[] searchGrams;
+
     @OneToMany(mappedBy = "improvementCase", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<CaseImage> images;
 
@@ -0,0 +1,58 @@
+package com.kaizen.repository;
+
+import com.kaizen.dto.CaseRow;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 一覧取得用の不透明なカーソル。(ソートキー, id) を保持し、Base64URL でエンコードする。
+ */
+public record CaseCursor(CaseSort sort, String key, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static CaseCursor of(CaseSort sort, CaseRow row) {
+        return new CaseCursor(sort, sort.keyOf(row), row.id());
+    }
+
+    public static CaseCursor of(SearchHit hit) {
+        return new CaseCursor(CaseSort.RELEVANCE, Float.toString(hit.score()), hit.id());
+    }
+
+    public String encode() {
+        String raw = sort.getParam() + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CaseCursor decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, -1);
+        if (parts.length != 3 || parts[1].isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        CaseSort sort = CaseSort.fromParam(parts[0]);
+        if (!sort.getParam().equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            if (sort == CaseSort.DATE) {
+                LocalDateTime.parse(parts[1]);
+            } else if (sort == CaseSort.RELEVANCE) {
+                Float.parseFloat(parts[1]);
+            } else {
+                Integer.parseInt(parts[1]);
+            }
+            return new CaseCursor(sort, parts[1], Long.valueOf(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -2,11 +2,25 @@ package com.kaizen.repository;
 
 import com.kaizen.model.CaseImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CaseImageRepository extends JpaRepository<CaseImage, Long> {
     List<CaseImage> findByImprovementCaseIdOrderByImageOrderAsc(Long caseId);
+
+    @Query("SELECT i.improvementCase.id AS caseId, i.imagePath AS imagePath, i.thumbnailPath AS thumbnailPath " +
+           "FROM CaseImage i " +
+           "WHERE i.improvementCase.id IN :caseIds ORDER BY i.improvementCase.id, i.imageOrder ASC")
+    List<ImagePathView> findImagePathsByCaseIds(@Param("caseIds") Collection<Long> caseIds);
+
+    interface ImagePathView {
+        Long getCaseId();
+        String getImagePath();
+        String getThumbnailPath();
+    }
 }
 
@@ -0,0 +1,56 @@
+package com.kaizen.repository;
+
+import java.util.function.BiConsumer;
+
+/**
+ * キーワード検索の条件と関連度のSQL。一覧（ImprovementCaseRepositoryImpl）と全件の書き出し（CaseStreamService）で
+ * 同じキーワードに同じ事例を同じ順で返すよう共有する。
+ * SQLは improvement_cases の別名を c とし、:keyword と（トライグラムで絞る場合のみ）:pattern を使う。
+ */
+public final class CaseSearch {
+
+    public static final char LIKE_ESCAPE = '\\';
+
+    // 関連度（題名の一致を本文の2倍に重み付けする）
+    public static final String SCORE =
+        "CAST(word_similarity(:keyword, c.title) * 2 + word_similarity(:keyword, c.description) AS real)";
+
+    private CaseSearch() {
+    }
+
+    /**
+     * 3文字以上の ASCII のキーワードは pg_trgm のインデックスで LIKE を絞り込める。それ以外（1〜2文字、日本語を含む）は
+     * トライグラムを取り出せないため、1文字・2文字の語の集合（schema.sql の search_grams 列）で候補を絞ってから部分一致を確認する。
+     * このとき LIKE を使うと、プランによってはトライグラムのインデックス（2文字以下では全件が候補）と組み合わされるため、
+     * 確認はインデックスを使わない strpos で行う。
+     */
+    public static boolean usesBigrams(String keyword) {
+        return keyword.length() < 3 || !keyword.chars().allMatch(c -> c < 0x80);
+    }
+
+    public static String condition(String keyword) {
+        if (usesBigrams(keyword)) {
+            return "search_matches(c.search_grams, :keyword) " +
+                "AND (strpos(c.title, :keyword) > 0 OR strpos(c.description, :keyword) > 0)";
+        }
+        return "(c.title LIKE :pattern ESCAPE '\\' OR c.description LIKE :pattern ESCAPE '\\')";
+    }
+
+    /**
+     * condition と SCORE のパラメーターを設定する。
+     */
+    public static void bind(String keyword, BiConsumer<String, Object> parameters) {
+        parameters.accept("keyword", keyword);
+        if (!usesBigrams(keyword)) {
+            parameters.accept("pattern", likePattern(keyword));
+        }
+    }
+
+    public static String likePattern(String keyword) {
+        String escaped = keyword
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,59 @@
+package com.kaizen.repository;
+
+import com.kaizen.dto.CaseRow;
+
+public enum CaseSort {
+    DATE("date", "createdAt"),
+    LIKES("likes", "likeCount"),
+    VIEWS("views", "viewCount"),
+    // キーワード検索時の関連度順（ソートキーは検索スコア）
+    RELEVANCE("relevance", null);
+
+    private final String param;
+    private final String attribute;
+
+    CaseSort(String param, String attribute) {
+        this.param = param;
+        this.attribute = attribute;
+    }
+
+    public static CaseSort fromParam(String sortBy) {
+        for (CaseSort sort : values()) {
+            if (sort.param.equals(sortBy)) {
+                return sort;
+            }
+        }
+        return DATE;
+    }
+
+    /**
+     * キーワード検索で並び順の指定がない場合は関連度順にする。キーワードがなければ関連度順は日付順にする。
+     */
+    public static CaseSort of(String sortBy, String keyword) {
+        boolean hasKeyword = keyword != null && !keyword.isEmpty();
+        CaseSort sort = hasKeyword && sortBy == null ? RELEVANCE : fromParam(sortBy);
+        return sort == RELEVANCE && !hasKeyword ? DATE : sort;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    // カーソルに埋め込むソートキーの文字列表現
+    public String keyOf(CaseRow row) {
+        switch (this) {
+            case LIKES:
+                return String.valueOf(row.likeCount());
+            case VIEWS:
+                return String.valueOf(row.viewCount());
+            case DATE:
+                return row.createdAt().toString();
+            default:
+                throw new IllegalStateException("No entity sort key for " + this);
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package com.kaizen.repository;
 
+import com.kaizen.dto.CommentResponse;
 import com.kaizen.model.Comment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByImprovementCaseIdOrderByCreatedAtAsc(Long caseId);
-    long countByImprovementCaseId(Long caseId);
-}
 
+    String SELECT_RESPONSES =
+        "SELECT new com.kaizen.dto.CommentResponse(c.id, c.content, u.id, u.username, c.createdAt) " +
+        "FROM Comment c JOIN c.user u WHERE c.improvementCase.id = :caseId ";
+
+    // (case_id, created_at, id) のインデックスを投稿日時順に辿る
+    @Query(SELECT_RESPONSES + "ORDER BY c.createdAt ASC, c.id ASC")
+    List<CommentResponse> findFirstPage(@Param("caseId") Long caseId, Limit limit);
+
+    @Query(SELECT_RESPONSES + "AND (c.createdAt, c.id) > (:createdAt, :id) ORDER BY c.createdAt ASC, c.id ASC")
+    List<CommentResponse> findPageAfter(@Param("caseId") Long caseId, @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id, Limit limit);
+}
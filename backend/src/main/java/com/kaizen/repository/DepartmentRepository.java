@@ -1,12 +1,22 @@
 package com.kaizen.repository;
 
+import com.kaizen.config.CacheConfig;
 import com.kaizen.model.Department;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface DepartmentRepository extends JpaRepository<Department, Long> {
+    // 工場は同じクエリで結合して取得し、工場ごとの追加のSELECTを避ける
+    @EntityGraph(attributePaths = "factory")
+    @Cacheable(value = CacheConfig.DEPARTMENTS, key = "'factory:' + #p0")
     List<Department> findByFactoryId(Long factoryId);
-}
 
+    @Override
+    @EntityGraph(attributePaths = "factory")
+    @Cacheable(value = CacheConfig.DEPARTMENTS, key = "'all'")
+    List<Department> findAll();
+}
@@ -1,10 +1,15 @@
 package com.kaizen.repository;
 
+import com.kaizen.config.CacheConfig;
 import com.kaizen.model.Factory;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 
 @Repository
 public interface FactoryRepository extends JpaRepository<Factory, Long> {
+    @Override
+    @Cacheable(CacheConfig.FACTORIES)
+    List<Factory> findAll();
 }
-
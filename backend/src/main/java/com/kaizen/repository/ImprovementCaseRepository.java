@@ -5,19 +5,36 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
-public interface ImprovementCaseRepository extends JpaRepository<ImprovementCase, Long> {
+public interface ImprovementCaseRepository extends JpaRepository<ImprovementCase, Long>, ImprovementCaseRepositoryCustom {
     List<ImprovementCase> findByFactoryId(Long factoryId);
     List<ImprovementCase> findByDepartmentId(Long departmentId);
     List<ImprovementCase> findByFactoryIdAndDepartmentId(Long factoryId, Long departmentId);
     
-    @Query("SELECT c FROM ImprovementCase c WHERE c.title LIKE %:keyword% OR c.description LIKE %:keyword%")
-    List<ImprovementCase> searchByKeyword(@Param("keyword") String keyword);
-    
-    @Query("SELECT c FROM ImprovementCase c WHERE c.createdAt BETWEEN :startDate AND :endDate ORDER BY c.viewCount DESC")
-    List<ImprovementCase> findTopViewedByMonth(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+    // 月別閲覧数集計（case_monthly_views）から指定月の上位を取得する
+    @Query(value = "SELECT c.id AS id, c.title AS title, m.view_count AS monthlyViewCount, " +
+                   "c.view_count AS viewCount, c.like_count AS likeCount, c.comment_count AS commentCount, " +
+                   "f.name AS factoryName, d.name AS departmentName " +
+                   "FROM case_monthly_views m " +
+                   "JOIN improvement_cases c ON c.id = m.case_id " +
+                   "JOIN factories f ON f.id = c.factory_id " +
+                   "JOIN departments d ON d.id = c.department_id " +
+                   "WHERE m.view_month = :month " +
+                   "ORDER BY m.view_count DESC, m.case_id DESC LIMIT :limit", nativeQuery = true)
+    List<TopViewedCaseView> findTopViewedInMonth(@Param("month") LocalDate month, @Param("limit") int limit);
+
+    interface TopViewedCaseView {
+        Long getId();
+        String getTitle();
+        Integer getMonthlyViewCount();
+        Integer getViewCount();
+        Integer getLikeCount();
+        Integer getCommentCount();
+        String getFactoryName();
+        String getDepartmentName();
+    }
 }
 
@@ -0,0 +1,16 @@
+package com.kaizen.repository;
+
+import com.kaizen.dto.CaseRow;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImprovementCaseRepositoryCustom {
+    List<CaseRow> findPage(Long factoryId, Long departmentId, String keyword,
+                           CaseSort sort, CaseCursor after, int limit);
+
+    List<SearchHit> searchPage(Long factoryId, Long departmentId, String keyword, CaseCursor after, int limit);
+
+    List<CaseRow> findRowsByIds(List<Long> ids);
+
+    Optional<CaseRow> findRowById(Long id);
+}
@@ -0,0 +1,177 @@
+package com.kaizen.repository;
+
+import com.kaizen.dto.CaseRow;
+import com.kaizen.model.Department;
+import com.kaizen.model.Factory;
+import com.kaizen.model.ImprovementCase;
+import com.kaizen.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// 検索のみのため読み取り専用トランザクションで実行する（レプリカ設定時はレプリカから読む）
+@Transactional(readOnly = true)
+public class ImprovementCaseRepositoryImpl implements ImprovementCaseRepositoryCustom {
+
+    private static final String SELECT_ROWS =
+        "SELECT new com.kaizen.dto.CaseRow(c.id, c.title, c.description, f.id, f.name, d.id, d.name, " +
+        "u.id, u.username, c.viewCount, c.likeCount, c.commentCount, c.createdAt, c.updatedAt) " +
+        "FROM ImprovementCase c JOIN c.factory f JOIN c.department d JOIN c.user u ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CaseRow> findPage(Long factoryId, Long departmentId, String keyword,
+                                  CaseSort sort, CaseCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CaseRow> query = cb.createQuery(CaseRow.class);
+        Root<ImprovementCase> root = query.from(ImprovementCase.class);
+        // 一覧で参照する工場・係・投稿者の列を1クエリで取得し、エンティティは生成しない
+        Join<ImprovementCase, Factory> factory = root.join("factory");
+        Join<ImprovementCase, Department> department = root.join("department");
+        Join<ImprovementCase, User> user = root.join("user");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (factoryId != null) {
+            predicates.add(cb.equal(factory.get("id"), factoryId));
+        }
+        if (departmentId != null) {
+            predicates.add(cb.equal(department.get("id"), departmentId));
+        }
+        if (keyword != null && !keyword.isEmpty()) {
+            if (CaseSearch.usesBigrams(keyword)) {
+                predicates.add(cb.isTrue(cb.function("search_matches", Boolean.class,
+                    root.get("searchGrams"), cb.literal(keyword))));
+                predicates.add(cb.or(
+                    cb.gt(cb.locate(root.get("title"), keyword), 0),
+                    cb.gt(cb.locate(root.get("description"), keyword), 0)));
+            } else {
+                String pattern = CaseSearch.likePattern(keyword);
+                predicates.add(cb.or(
+                    cb.like(root.get("title"), pattern, CaseSearch.LIKE_ESCAPE),
+                    cb.like(root.get("description"), pattern, CaseSearch.LIKE_ESCAPE)));
+            }
+        }
+
+        // キーセット条件: (key, id) < (cursor.key, cursor.id) を降順で辿る
+        Path<Long> id = root.get("id");
+        if (after != null) {
+            if (sort == CaseSort.DATE) {
+                predicates.add(before(cb, root.get(sort.getAttribute()), LocalDateTime.parse(after.key()), id, after.id()));
+            } else {
+                predicates.add(before(cb, root.get(sort.getAttribute()), Integer.valueOf(after.key()), id, after.id()));
+            }
+        }
+
+        query.select(cb.construct(CaseRow.class,
+                root.get("id"), root.get("title"), root.get("description"),
+                factory.get("id"), factory.get("name"),
+                department.get("id"), department.get("name"),
+                user.get("id"), user.get("username"),
+                root.get("viewCount"), root.get("likeCount"), root.get("commentCount"),
+                root.get("createdAt"), root.get("updatedAt")))
+            .where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.desc(root.get(sort.getAttribute())), cb.desc(id));
+
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<SearchHit> searchPage(Long factoryId, Long departmentId, String keyword, CaseCursor after, int limit) {
+        // title/description の pg_trgm か search_grams の GIN インデックスで候補を絞り、類似度で順位付けする
+        StringBuilder sql = new StringBuilder()
+            .append("SELECT s.id, s.score FROM (")
+            .append("SELECT c.id, ").append(CaseSearch.SCORE).append(" AS score ")
+            .append("FROM improvement_cases c ")
+            .append("WHERE ").append(CaseSearch.condition(keyword));
+        if (factoryId != null) {
+            sql.append(" AND c.factory_id = :factoryId");
+        }
+        if (departmentId != null) {
+            sql.append(" AND c.department_id = :departmentId");
+        }
+        sql.append(") s");
+        if (after != null) {
+            sql.append(" WHERE s.score < CAST(:score AS real) OR (s.score = CAST(:score AS real) AND s.id < :lastId)");
+        }
+        sql.append(" ORDER BY s.score DESC, s.id DESC");
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+            .setMaxResults(limit);
+        CaseSearch.bind(keyword, query::setParameter);
+        if (factoryId != null) {
+            query.setParameter("factoryId", factoryId);
+        }
+        if (departmentId != null) {
+            query.setParameter("departmentId", departmentId);
+        }
+        if (after != null) {
+            query.setParameter("score", Float.parseFloat(after.key()));
+            query.setParameter("lastId", after.id());
+        }
+
+        List<SearchHit> hits = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) query.getResultList()) {
+            hits.add(new SearchHit(((Number) row[0]).longValue(), ((Number) row[1]).floatValue()));
+        }
+        return hits;
+    }
+
+    @Override
+    public List<CaseRow> findRowsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<CaseRow> rows = entityManager.createQuery(SELECT_ROWS + "WHERE c.id IN :ids", CaseRow.class)
+            .setParameter("ids", ids)
+            .getResultList();
+
+        // 引数のID順に並べ直す
+        Map<Long, CaseRow> byId = new HashMap<>();
+        for (CaseRow row : rows) {
+            byId.put(row.id(), row);
+        }
+        List<CaseRow> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            CaseRow row = byId.get(id);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Optional<CaseRow> findRowById(Long id) {
+        return entityManager.createQuery(SELECT_ROWS + "WHERE c.id = :id", CaseRow.class)
+            .setParameter("id", id)
+            .getResultStream()
+            .findFirst();
+    }
+
+    private <Y extends Comparable<? super Y>> Predicate before(CriteriaBuilder cb, Path<Y> key, Y value,
+                                                               Path<Long> id, Long lastId) {
+        return cb.or(
+            cb.lessThan(key, value),
+            cb.and(cb.equal(key, value), cb.lessThan(id, lastId))
+        );
+    }
+}
@@ -0,0 +1,7 @@
+package com.kaizen.repository;
+
+/**
+ * キーワード検索の結果。事例IDと関連度スコアのみを保持する。
+ */
+public record SearchHit(Long id, float score) {
+}
@@ -0,0 +1,55 @@
+package com.kaizen.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Authorization: Bearer のアクセストークンを検証し、利用者を認証済みにする。
+ * トークンがない・無効な場合は未認証のまま続け、認証が必要なAPIは 401 になる。
+ * Spring Security のフィルタチェーンにだけ登録する（サーブレットフィルタとしては登録しない）。
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+    private static final List<GrantedAuthority> USER = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    private static final List<GrantedAuthority> ADMIN = List.of(
+        new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    private final TokenService tokenService;
+    private final UserPrincipalService userPrincipalService;
+
+    public TokenAuthenticationFilter(TokenService tokenService, UserPrincipalService userPrincipalService) {
+        this.tokenService = tokenService;
+        this.userPrincipalService = userPrincipalService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)) {
+            Optional<Long> userId = tokenService.verify(header.substring(BEARER.length()).trim());
+            UserPrincipal principal = userId.map(userPrincipalService::get).orElse(null);
+            if (principal != null) {
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(new UsernamePasswordAuthenticationToken(
+                    principal, null, principal.admin() ? ADMIN : USER));
+                SecurityContextHolder.setContext(context);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
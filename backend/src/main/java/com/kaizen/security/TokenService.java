@@ -0,0 +1,102 @@
+package com.kaizen.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * 署名付きのアクセストークン。"利用者ID.有効期限（エポック秒）.署名" の形式で、
+ * 署名は HMAC-SHA256 を Base64URL にしたもの。サーバー側に状態を持たず、署名と有効期限だけで検証する。
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Value("${auth.token.secret:}")
+    private String secret;
+
+    @Value("${auth.token.ttl-hours:12}")
+    private long ttlHours;
+
+    private SecretKeySpec key;
+
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            // 未設定の場合は起動ごとに鍵を作る（再起動や複数台構成ではトークンが無効になる）
+            log.warn("auth.token.secret is not set; issued tokens are valid only until this instance restarts");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("auth.token.secret must be at least 32 bytes");
+            }
+        }
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public IssuedToken issue(Long userId) {
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(ttlHours));
+        String payload = userId + "." + expiresAt.getEpochSecond();
+        return new IssuedToken(payload + "." + sign(payload), expiresAt);
+    }
+
+    /**
+     * 署名と有効期限を確認し、利用者IDを返す。
+     */
+    public Optional<Long> verify(String token) {
+        int separator = token.lastIndexOf('.');
+        if (separator <= 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, separator);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return Optional.empty();
+        }
+        String[] parts = payload.split("\\.");
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+        try {
+            if (Instant.now().getEpochSecond() >= Long.parseLong(parts[1])) {
+                return Optional.empty();
+            }
+            return Optional.of(Long.parseLong(parts[0]));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.kaizen.security;
+
+import com.kaizen.model.User;
+
+/**
+ * 認証済みの利用者。アクセストークンの検証後にキャッシュから取り出し、
+ * コントローラーでは @AuthenticationPrincipal で受け取る。
+ */
+public record UserPrincipal(Long id, String username, String email, boolean admin) {
+
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getEmail(), Boolean.TRUE.equals(user.getIsAdmin()));
+    }
+}
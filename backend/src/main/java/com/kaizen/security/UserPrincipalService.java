@@ -0,0 +1,52 @@
+package com.kaizen.security;
+
+import com.kaizen.config.CacheConfig;
+import com.kaizen.model.User;
+import com.kaizen.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * 利用者IDから認証済みの利用者を引くキャッシュ。ログイン時に登録し、
+ * 認証が必要なリクエストごとに users を読まないようにする。
+ */
+@Service
+public class UserPrincipalService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * 利用者を返す。キャッシュにない場合は users から読み込む。存在しない場合は null を返す。
+     */
+    public UserPrincipal get(Long userId) {
+        Cache cache = cache();
+        UserPrincipal principal = cache.get(userId, UserPrincipal.class);
+        if (principal == null) {
+            principal = userRepository.findById(userId).map(UserPrincipal::from).orElse(null);
+            if (principal != null) {
+                cache.put(userId, principal);
+            }
+        }
+        return principal;
+    }
+
+    public UserPrincipal put(User user) {
+        UserPrincipal principal = UserPrincipal.from(user);
+        cache().put(user.getId(), principal);
+        return principal;
+    }
+
+    public void evict(Long userId) {
+        cache().evict(userId);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.USER_PRINCIPALS);
+    }
+}
@@ -0,0 +1,19 @@
+package com.kaizen.service;
+
+/**
+ * パスワードの照合待ちが上限に達したため、ログイン・登録を受け付けられない。
+ * 待ち行列がはけるまでの見込み時間を再試行までの秒数として持つ。
+ */
+public class AuthBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AuthBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
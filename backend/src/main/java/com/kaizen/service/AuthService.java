@@ -2,41 +2,177 @@ package com.kaizen.service;
 
 import com.kaizen.model.User;
 import com.kaizen.repository.UserRepository;
+import com.kaizen.security.UserPrincipalService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * ログインと利用者登録。BCrypt の照合・ハッシュ化は専用のスレッドで行い、同時に計算する数を CPU 数程度に抑える。
+ * 始業時などにログインが集中して待ち行列が上限を超えた場合は {@link AuthBusyException} を投げ、
+ * リクエストを処理するスレッドで BCrypt を計算して一覧などの処理まで遅くならないようにする。
+ */
 @Service
 public class AuthService {
 
+    // 照合前の検索はトランザクションを張らずに JdbcTemplate で行い、照合（BCrypt のスレッドの待ち）の間は
+    // DB接続を持たない。照合に使う列だけを読み、エンティティは永続化コンテキストに載せない
+    private static final String FIND_BY_USERNAME =
+        "SELECT id, username, password, email, is_admin FROM users WHERE username = ?";
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0 はCPU数
+    @Value("${auth.bcrypt.threads:0}")
+    private int bcryptThreads;
+
+    @Value("${auth.bcrypt.queue-size:64}")
+    private int bcryptQueueSize;
+
+    @Value("${auth.bcrypt.timeout-ms:5000}")
+    private long bcryptTimeoutMs;
+
+    private ThreadPoolExecutor bcryptExecutor;
+
+    private int threads;
+
+    // 1回の BCrypt 計算にかかる時間の移動平均。待ち行列の長さから待ち時間を見積もる
+    private volatile long averageBcryptNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @PostConstruct
+    public void init() {
+        threads = bcryptThreads > 0 ? bcryptThreads : Runtime.getRuntime().availableProcessors();
+        bcryptExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(bcryptQueueSize), new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, bcryptExecutor, "auth.bcrypt", Collections.emptyList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bcryptExecutor.shutdown();
+    }
+
     public User login(String username, String password) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            if (passwordEncoder.matches(password, user.getPassword())) {
-                return user;
-            }
+        checkCapacity();
+        User user = findByUsername(username);
+        if (user != null && bcrypt(() -> passwordEncoder.matches(password, user.getPassword()))) {
+            // 以降のリクエストはトークンの利用者IDからキャッシュで引く
+            userPrincipalService.put(user);
+            return user;
         }
         return null;
     }
 
     public User register(String username, String password, String email) {
-        if (userRepository.findByUsername(username).isPresent()) {
+        checkCapacity();
+        if (findByUsername(username) != null) {
             return null; // ユーザーが既に存在
         }
         User user = new User();
         user.setUsername(username);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(bcrypt(() -> passwordEncoder.encode(password)));
         user.setEmail(email);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userPrincipalService.put(saved);
+        return saved;
+    }
+
+    private User findByUsername(String username) {
+        List<User> users = jdbcTemplate.query(FIND_BY_USERNAME, (rs, i) -> {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setUsername(rs.getString("username"));
+            user.setPassword(rs.getString("password"));
+            user.setEmail(rs.getString("email"));
+            user.setIsAdmin(rs.getBoolean("is_admin"));
+            return user;
+        }, username);
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    /**
+     * 見積もった待ち時間が上限を超える場合は、利用者の検索もせずにすぐ断る。
+     * 断られたリクエストにCPUやDB接続を使わせず、受け付けたログインの照合に回す。
+     */
+    private void checkCapacity() {
+        int queued = bcryptExecutor.getQueue().size();
+        if (queued >= bcryptQueueSize || expectedWaitNanos() > TimeUnit.MILLISECONDS.toNanos(bcryptTimeoutMs)) {
+            throw busy("Too many concurrent logins");
+        }
+    }
+
+    private long expectedWaitNanos() {
+        return (bcryptExecutor.getQueue().size() / threads + 1) * averageBcryptNanos;
+    }
+
+    // 再試行は今の待ち行列がはけた頃に来てもらう（一斉に再試行されて同じ状況を繰り返さないように）
+    private AuthBusyException busy(String message) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(expectedWaitNanos() + TimeUnit.SECONDS.toNanos(1) - 1));
+        return new AuthBusyException(message, seconds);
     }
-}
 
+    /**
+     * BCrypt の計算を専用スレッドで行い、結果を待つ。待ち行列が一杯の場合と、
+     * 順番が来るまでに待ち時間を超えた場合は受け付けない。
+     * 待ち時間を超えたものは計算せずに捨てるため、集中時も CPU は間に合うログインだけに使う。
+     */
+    private <T> T bcrypt(Callable<T> task) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bcryptTimeoutMs);
+        Future<T> future;
+        try {
+            future = bcryptExecutor.submit(() -> {
+                long start = System.nanoTime();
+                if (start - deadline > 0) {
+                    throw busy("Password check timed out");
+                }
+                T result = task.call();
+                averageBcryptNanos += (System.nanoTime() - start - averageBcryptNanos) / 8;
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            throw busy("Too many concurrent logins");
+        }
+        try {
+            // 待ち時間は上の確認で打ち切られるため、ここでは計算の終わりまで待つ
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy("Interrupted while checking password");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
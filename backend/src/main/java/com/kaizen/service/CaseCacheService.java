@@ -0,0 +1,48 @@
+package com.kaizen.service;
+
+import com.kaizen.config.CacheConfig;
+import com.kaizen.dto.CaseResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * 組み立て済みの事例詳細レスポンスのキャッシュ。
+ */
+@Service
+public class CaseCacheService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * キャッシュにあればそれを返し、なければ loader で組み立てて保持する。loader が null を返した場合（事例がない）は保持しない。
+     * 組み立ては同じ事例の evict と排他に行われ、組み立て中に更新されて evict された場合は組み立てた内容が破棄される
+     * （読み込みと保持の間に evict が入り、更新前の内容が残ることはない）。
+     */
+    @SuppressWarnings("unchecked")
+    public CaseResponse get(Long caseId, Supplier<CaseResponse> loader) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache =
+            (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache().getNativeCache();
+        return (CaseResponse) cache.get(caseId, key -> loader.get());
+    }
+
+    public void evict(Long caseId) {
+        cache().evict(caseId);
+    }
+
+    public void evictAll(Collection<Long> caseIds) {
+        Cache cache = cache();
+        for (Long caseId : caseIds) {
+            cache.evict(caseId);
+        }
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.CASE_DETAILS);
+    }
+}
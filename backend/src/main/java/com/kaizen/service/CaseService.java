@@ -0,0 +1,224 @@
+package com.kaizen.service;
+
+import com.kaizen.dto.CaseRow;
+import com.kaizen.model.CaseImage;
+import com.kaizen.model.ImprovementCase;
+import com.kaizen.repository.CaseImageRepository;
+import com.kaizen.repository.DepartmentRepository;
+import com.kaizen.repository.FactoryRepository;
+import com.kaizen.repository.ImprovementCaseRepository;
+import com.kaizen.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事例の投稿。画像の保存（向き補正・縮小・書き込み）を専用スレッドで並列に行ってから、
+ * 事例・画像・統計の更新を1トランザクションで登録する。
+ * 画像の処理中はDB接続を保持せず、登録に失敗した場合は保存済みのファイルを削除する。
+ */
+@Service
+public class CaseService {
+
+    public static final int MAX_IMAGES = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(CaseService.class);
+
+    @Autowired
+    private ImprovementCaseRepository caseRepository;
+
+    @Autowired
+    private CaseImageRepository imageRepository;
+
+    @Autowired
+    private FactoryRepository factoryRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.image.ingest-threads:4}")
+    private int ingestThreads;
+
+    @Value("${file.image.ingest-queue-size:100}")
+    private int ingestQueueSize;
+
+    private ThreadPoolExecutor imageExecutor;
+
+    @PostConstruct
+    public void init() {
+        // キューが溢れた場合は呼び出し元で処理し、投稿が集中しても待ち行列を際限なく伸ばさない
+        imageExecutor = new ThreadPoolExecutor(ingestThreads, ingestThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(ingestQueueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        imageExecutor.shutdown();
+    }
+
+    public ImprovementCase createCase(String title, String description, Long factoryId, Long departmentId,
+                                      Long userId, MultipartFile[] images) throws IOException {
+        List<FileStorageService.StoredImage> stored = storeImages(images);
+        try {
+            return transactionTemplate.execute(status -> {
+                ImprovementCase improvementCase = new ImprovementCase();
+                improvementCase.setTitle(title);
+                improvementCase.setDescription(description);
+                improvementCase.setFactory(factoryRepository.findById(factoryId).orElseThrow());
+                improvementCase.setDepartment(departmentRepository.findById(departmentId).orElseThrow());
+                // 利用者はトークンの検証で存在を確認済みのため、読み込まずに参照だけを設定する
+                improvementCase.setUser(userRepository.getReferenceById(userId));
+
+                ImprovementCase savedCase = caseRepository.save(improvementCase);
+                statisticsService.caseCreated(savedCase.getId());
+
+                // IDはシーケンスから採番するため、画像の行はコミット時に1回のバッチでINSERTされる
+                List<CaseImage> caseImages = new ArrayList<>(stored.size());
+                for (int i = 0; i < stored.size(); i++) {
+                    CaseImage caseImage = new CaseImage();
+                    caseImage.setImprovementCase(savedCase);
+                    caseImage.setImagePath(stored.get(i).imagePath());
+                    caseImage.setMediumPath(stored.get(i).mediumPath());
+                    caseImage.setThumbnailPath(stored.get(i).thumbnailPath());
+                    caseImage.setImageOrder(i);
+                    caseImages.add(caseImage);
+                }
+                imageRepository.saveAll(caseImages);
+                return savedCase;
+            });
+        } catch (RuntimeException e) {
+            deleteAll(stored);
+            throw e;
+        }
+    }
+
+    /**
+     * 事例の題名・内容・工場・係を変更する（null の項目は変更しない）。事例が存在しない場合は空を返す。
+     * 応答に使う行はトランザクション内で組み立てる（投稿者などの参照を読み込み済みのうちに）。
+     */
+    public Optional<CaseRow> updateCase(Long caseId, String title, String description,
+                                        Long factoryId, Long departmentId) {
+        return transactionTemplate.execute(status -> {
+            Optional<ImprovementCase> caseOpt = caseRepository.findById(caseId);
+            if (caseOpt.isEmpty()) {
+                return Optional.empty();
+            }
+            ImprovementCase improvementCase = caseOpt.get();
+            if (title != null) improvementCase.setTitle(title);
+            if (description != null) improvementCase.setDescription(description);
+            if (factoryId != null) improvementCase.setFactory(factoryRepository.findById(factoryId).orElseThrow());
+            if (departmentId != null) improvementCase.setDepartment(departmentRepository.findById(departmentId).orElseThrow());
+
+            // 工場・係が変わる場合は統計集計を移し替える（変更前の工場・係で減らし、変更後で増やす）
+            boolean moved = factoryId != null || departmentId != null;
+            if (moved) statisticsService.caseRemoved(caseId);
+            caseRepository.saveAndFlush(improvementCase);
+            if (moved) statisticsService.caseCreated(caseId);
+            return Optional.of(CaseRow.from(improvementCase));
+        });
+    }
+
+    /**
+     * 事例を削除し、コミット後に画像ファイルの参照を解除する。事例が存在しない場合は false を返す。
+     */
+    public boolean deleteCase(Long caseId) {
+        List<CaseImage> images = transactionTemplate.execute(status -> {
+            if (!caseRepository.existsById(caseId)) {
+                return null;
+            }
+            List<CaseImage> caseImages = imageRepository.findByImprovementCaseIdOrderByImageOrderAsc(caseId);
+            statisticsService.caseRemoved(caseId);
+            caseRepository.deleteById(caseId);
+            return caseImages;
+        });
+        if (images == null) {
+            return false;
+        }
+        List<FileStorageService.StoredImage> stored = new ArrayList<>(images.size());
+        for (CaseImage image : images) {
+            stored.add(new FileStorageService.StoredImage(
+                image.getImagePath(), image.getMediumPath(), image.getThumbnailPath()));
+        }
+        try {
+            fileStorageService.delete(stored);
+        } catch (IOException e) {
+            log.warn("Failed to release image files of case {}", caseId, e);
+        }
+        return true;
+    }
+
+    /**
+     * 画像を並列に保存し、投稿順のまま返す。1枚でも失敗した場合は保存済みの分を削除して例外を投げる。
+     */
+    private List<FileStorageService.StoredImage> storeImages(MultipartFile[] images) throws IOException {
+        int count = Math.min(images.length, MAX_IMAGES);
+        List<Future<FileStorageService.StoredImage>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MultipartFile image = images[i];
+            futures.add(imageExecutor.submit(() -> fileStorageService.storeImage(image)));
+        }
+
+        List<FileStorageService.StoredImage> stored = new ArrayList<>(count);
+        Throwable failure = null;
+        for (Future<FileStorageService.StoredImage> future : futures) {
+            try {
+                stored.add(future.get());
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new InterruptedIOException("Interrupted while storing images");
+                futures.forEach(f -> f.cancel(true));
+                break;
+            }
+        }
+        if (failure != null) {
+            deleteAll(stored);
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+            throw new IOException("Failed to store image", failure);
+        }
+        return stored;
+    }
+
+    private void deleteAll(List<FileStorageService.StoredImage> stored) {
+        try {
+            fileStorageService.delete(stored);
+        } catch (IOException e) {
+            // 削除に失敗したファイルは孤立するが、元の例外を優先する
+        }
+    }
+}
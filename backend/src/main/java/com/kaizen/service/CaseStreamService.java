@@ -0,0 +1,157 @@
+package com.kaizen.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaizen.repository.CaseSearch;
+import com.kaizen.repository.CaseSort;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 事例一覧をDBカーソルから1行ずつJSONに書き出す。
+ * 一覧全体をメモリに載せないため、件数によらず使用メモリが一定になる。
+ */
+@Service
+public class CaseStreamService {
+
+    private static final int FLUSH_EVERY_ROWS = 50;
+
+    private static final String SELECT_CASES =
+        "SELECT c.id, c.title, c.description, c.factory_id, f.name AS factory_name, " +
+        "c.department_id, d.name AS department_name, c.user_id, u.username, " +
+        "c.view_count, c.like_count, c.comment_count, c.created_at, c.updated_at, " +
+        "ARRAY(SELECT i.image_path FROM case_images i WHERE i.case_id = c.id ORDER BY i.image_order) AS images, " +
+        "ARRAY(SELECT COALESCE(i.thumbnail_path, i.image_path) FROM case_images i WHERE i.case_id = c.id ORDER BY i.image_order) AS thumbnails " +
+        "FROM improvement_cases c " +
+        "JOIN factories f ON f.id = c.factory_id " +
+        "JOIN departments d ON d.id = c.department_id " +
+        "JOIN users u ON u.id = c.user_id " +
+        "WHERE 1 = 1";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cases.stream.fetch-size:500}")
+    private int fetchSize;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        // 共有の JdbcTemplate の設定を変えないよう、カーソル取得用に専用のものを用意する
+        JdbcTemplate cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(fetchSize);
+        jdbcTemplate = new NamedParameterJdbcTemplate(cursorTemplate);
+    }
+
+    // PostgreSQL はトランザクション内でのみ fetchSize 単位のカーソル取得を行う
+    @Transactional(readOnly = true)
+    public void writeCases(OutputStream out, Long factoryId, Long departmentId, String keyword, CaseSort sort)
+            throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT_CASES);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        if (factoryId != null) {
+            sql.append(" AND c.factory_id = :factoryId");
+            params.addValue("factoryId", factoryId);
+        }
+        if (departmentId != null) {
+            sql.append(" AND c.department_id = :departmentId");
+            params.addValue("departmentId", departmentId);
+        }
+        // キーワードは一覧の検索と同じ条件（search_grams かトライグラムのインデックスで絞る）で探す
+        if (keyword != null && !keyword.isEmpty()) {
+            sql.append(" AND ").append(CaseSearch.condition(keyword));
+            CaseSearch.bind(keyword, params::addValue);
+        }
+        switch (sort) {
+            case RELEVANCE:
+                sql.append(" ORDER BY ").append(CaseSearch.SCORE).append(" DESC, c.id DESC");
+                break;
+            case LIKES:
+                sql.append(" ORDER BY c.like_count DESC, c.id DESC");
+                break;
+            case VIEWS:
+                sql.append(" ORDER BY c.view_count DESC, c.id DESC");
+                break;
+            default:
+                sql.append(" ORDER BY c.created_at DESC, c.id DESC");
+        }
+
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartArray();
+            int[] rows = {0};
+            jdbcTemplate.query(sql.toString(), params, rs -> {
+                try {
+                    writeCase(gen, rs);
+                    if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                        gen.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            gen.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeCase(JsonGenerator gen, ResultSet rs) throws IOException, SQLException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", rs.getLong("id"));
+        gen.writeStringField("title", rs.getString("title"));
+        gen.writeStringField("description", rs.getString("description"));
+        gen.writeNumberField("factoryId", rs.getLong("factory_id"));
+        gen.writeStringField("factoryName", rs.getString("factory_name"));
+        gen.writeNumberField("departmentId", rs.getLong("department_id"));
+        gen.writeStringField("departmentName", rs.getString("department_name"));
+        gen.writeNumberField("userId", rs.getLong("user_id"));
+        gen.writeStringField("username", rs.getString("username"));
+        gen.writeNumberField("viewCount", rs.getInt("view_count"));
+        gen.writeNumberField("likeCount", rs.getInt("like_count"));
+        gen.writeNumberField("commentCount", rs.getInt("comment_count"));
+        writeTimestamp(gen, "createdAt", rs.getTimestamp("created_at"));
+        writeTimestamp(gen, "updatedAt", rs.getTimestamp("updated_at"));
+        writeStringArray(gen, "images", rs.getArray("images"));
+        writeStringArray(gen, "thumbnails", rs.getArray("thumbnails"));
+        gen.writeEndObject();
+    }
+
+    private void writeTimestamp(JsonGenerator gen, String field, Timestamp value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(field);
+        } else {
+            gen.writeStringField(field, DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value.toLocalDateTime()));
+        }
+    }
+
+    private void writeStringArray(JsonGenerator gen, String field, Array array) throws IOException, SQLException {
+        gen.writeArrayFieldStart(field);
+        if (array != null) {
+            for (Object value : (Object[]) array.getArray()) {
+                gen.writeString((String) value);
+            }
+            array.free();
+        }
+        gen.writeEndArray();
+    }
+}
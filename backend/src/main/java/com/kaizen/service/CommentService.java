@@ -0,0 +1,102 @@
+package com.kaizen.service;
+
+import com.kaizen.dto.CommentResponse;
+import com.kaizen.live.CaseActivity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * コメントの投稿・編集・削除。行の追加・削除と comment_count の加減算を同一ステートメントで行い、
+ * 件数を数え直さずに事例のコメント数を保つ。編集・削除は投稿者本人のみ。
+ */
+@Service
+public class CommentService {
+
+    // 事例の行を更新（ロック）してからコメントを追加する。事例がなければ何も追加しない
+    private static final String ADD =
+        "WITH target AS (" +
+        "  UPDATE improvement_cases SET comment_count = comment_count + 1 WHERE id = ? RETURNING id" +
+        ") " +
+        "INSERT INTO comments (case_id, user_id, content, created_at, updated_at) " +
+        "SELECT id, ?, ?, ?, ? FROM target RETURNING id";
+
+    private static final String EDIT =
+        "UPDATE comments SET content = ?, updated_at = ? " +
+        "WHERE id = ? AND case_id = ? AND user_id = ? RETURNING created_at";
+
+    private static final String DELETE =
+        "WITH removed AS (" +
+        "  DELETE FROM comments WHERE id = ? AND case_id = ? AND user_id = ? RETURNING case_id" +
+        ") " +
+        "UPDATE improvement_cases SET comment_count = comment_count - 1 " +
+        "WHERE id IN (SELECT case_id FROM removed) RETURNING id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * コメントを追加する。事例が存在しない場合は空を返す。
+     */
+    @Transactional
+    public Optional<CommentResponse> add(Long caseId, Long userId, String username, String content) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = jdbcTemplate.queryForList(ADD, Long.class, caseId, userId, content, now, now);
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        statisticsService.countersChanged(caseId, 0, 0, 1);
+        CommentResponse comment = new CommentResponse(ids.get(0), content, userId, username, now);
+        eventPublisher.publishEvent(CaseActivity.commentAdded(caseId, comment));
+        return Optional.of(comment);
+    }
+
+    /**
+     * 本人のコメントの内容を変更する。コメントがないか本人のものでない場合は空を返す。
+     */
+    @Transactional
+    public Optional<CommentResponse> edit(Long caseId, Long commentId, Long userId, String username, String content) {
+        List<LocalDateTime> createdAt = jdbcTemplate.queryForList(EDIT, LocalDateTime.class,
+            content, LocalDateTime.now(), commentId, caseId, userId);
+        if (createdAt.isEmpty()) {
+            return Optional.empty();
+        }
+        CommentResponse comment = new CommentResponse(commentId, content, userId, username, createdAt.get(0));
+        eventPublisher.publishEvent(CaseActivity.commentEdited(caseId, comment));
+        return Optional.of(comment);
+    }
+
+    /**
+     * 本人のコメントを削除する。コメントがないか本人のものでない場合は false を返す。
+     */
+    @Transactional
+    public boolean delete(Long caseId, Long commentId, Long userId) {
+        if (jdbcTemplate.queryForList(DELETE, Long.class, commentId, caseId, userId).isEmpty()) {
+            return false;
+        }
+        statisticsService.countersChanged(caseId, 0, 0, -1);
+        eventPublisher.publishEvent(CaseActivity.commentDeleted(caseId, commentId));
+        return true;
+    }
+
+    /**
+     * 編集・削除できなかった理由（存在しないか、本人のものでないか）の判定に使う。
+     */
+    public boolean exists(Long caseId, Long commentId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM comments WHERE id = ? AND case_id = ?)",
+            Boolean.class, commentId, caseId));
+    }
+}
@@ -1,21 +1,69 @@
 package com.kaizen.service;
 
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataException;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.kaizen.storage.FileStore;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 
+// 画像の変換を含む保存・削除の処理時間（class, method, exception ごと）
+@Timed("kaizen.file.storage")
 @Service
 public class FileStorageService {
 
-    @Value("${file.upload.dir}")
-    private String uploadDir;
+    @Autowired
+    private FileStore fileStore;
+
+    @Value("${file.image.full-max-size:2048}")
+    private int fullMaxSize;
+
+    @Value("${file.image.medium-max-size:1024}")
+    private int mediumMaxSize;
+
+    @Value("${file.image.thumbnail-max-size:320}")
+    private int thumbnailMaxSize;
+
+    @Value("${file.image.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // 同時に展開する画像の数（0 はCPU数）。仮想スレッドでは同時実行数に上限がないため、
+    // 1枚で数十MBになる展開後の画素データがメモリを使い切らないよう制限する
+    @Value("${file.image.max-concurrent:0}")
+    private int maxConcurrentImages;
+
+    private Semaphore imageSlots;
+
+    @PostConstruct
+    public void init() {
+        int slots = maxConcurrentImages > 0 ? maxConcurrentImages : Runtime.getRuntime().availableProcessors();
+        imageSlots = new Semaphore(slots, true);
+    }
 
     public String storeFile(MultipartFile file) throws IOException {
         String originalFilename = file.getOriginalFilename();
@@ -23,17 +71,217 @@ public class FileStorageService {
         if (originalFilename != null && originalFilename.contains(".")) {
             extension = originalFilename.substring(originalFilename.lastIndexOf("."));
         }
-        String filename = UUID.randomUUID().toString() + extension;
-        Path uploadPath = Paths.get(uploadDir);
-        
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        try (InputStream in = file.getInputStream()) {
+            return fileStore.store(in, extension);
         }
-        
-        Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        return "/uploads/" + filename;
     }
-}
 
+    /**
+     * 画像を向き補正・再エンコードし、フルサイズ・中サイズ・サムネイルを保存する。
+     * JPEG/PNG 以外やデコードできない画像は元ファイルをそのまま保存する。
+     */
+    public StoredImage storeImage(MultipartFile file) throws IOException {
+        String format = detectFormat(file.getOriginalFilename(), file.getContentType());
+        if (format == null) {
+            return storeOriginal(file);
+        }
+
+        try {
+            imageSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to process image");
+        }
+        try {
+            return processImage(file, format);
+        } finally {
+            imageSlots.release();
+        }
+    }
+
+    private StoredImage processImage(MultipartFile file, String format) throws IOException {
+        byte[] bytes = file.getBytes();
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (source == null) {
+            return storeOriginal(file);
+        }
+
+        boolean png = "png".equals(format);
+        int type = png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = applyOrientation(source, readOrientation(bytes), type);
+
+        String extension = png ? ".png" : ".jpg";
+        BufferedImage full = resize(oriented, fullMaxSize, type);
+        BufferedImage medium = resize(full, mediumMaxSize, type);
+        BufferedImage thumbnail = resize(medium, thumbnailMaxSize, type);
+
+        List<String> stored = new ArrayList<>(3);
+        BufferedImage previous = null;
+        try {
+            for (BufferedImage image : List.of(full, medium, thumbnail)) {
+                // 縮小不要で前のサイズと同じ画像なら再エンコードせず参照だけ増やす
+                if (image == previous) {
+                    String path = stored.get(stored.size() - 1);
+                    fileStore.retain(path);
+                    stored.add(path);
+                } else {
+                    stored.add(fileStore.store(extension, out -> write(image, out, png)));
+                }
+                previous = image;
+            }
+        } catch (IOException | RuntimeException e) {
+            fileStore.release(stored);
+            throw e;
+        }
+        return new StoredImage(stored.get(0), stored.get(1), stored.get(2));
+    }
+
+    // 変換できない画像は元ファイルを3サイズ共通で使う（参照は列ごとに数える）
+    private StoredImage storeOriginal(MultipartFile file) throws IOException {
+        String path = storeFile(file);
+        fileStore.retain(path);
+        fileStore.retain(path);
+        return new StoredImage(path, path, path);
+    }
+
+    /**
+     * storeImage で保存したファイル（派生サイズを含む）の参照を解除する。
+     */
+    public void delete(StoredImage image) throws IOException {
+        delete(List.of(image));
+    }
+
+    /**
+     * 複数の画像の参照をまとめて解除する。
+     */
+    public void delete(Collection<StoredImage> images) throws IOException {
+        List<String> paths = new ArrayList<>(images.size() * 3);
+        for (StoredImage image : images) {
+            paths.add(image.imagePath());
+            paths.add(image.mediumPath());
+            paths.add(image.thumbnailPath());
+        }
+        fileStore.release(paths);
+    }
+
+    private String detectFormat(String originalFilename, String contentType) {
+        String name = originalFilename != null ? originalFilename.toLowerCase() : "";
+        if (name.endsWith(".png") || "image/png".equals(contentType)) {
+            return "png";
+        }
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg") || "image/jpeg".equals(contentType)) {
+            return "jpeg";
+        }
+        return null;
+    }
+
+    private int readOrientation(byte[] bytes) {
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(bytes));
+            ExifIFD0Directory exif = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                return exif.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+        } catch (ImageProcessingException | MetadataException | IOException e) {
+            // EXIFが読めない場合は補正しない
+        }
+        return 1;
+    }
+
+    // EXIF Orientation (1-8) に従って画素を回転・反転する
+    private BufferedImage applyOrientation(BufferedImage src, int orientation, int type) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2:
+                t.translate(w, 0);
+                t.scale(-1, 1);
+                break;
+            case 3:
+                t.translate(w, h);
+                t.rotate(Math.PI);
+                break;
+            case 4:
+                t.translate(0, h);
+                t.scale(1, -1);
+                break;
+            case 5:
+                t.rotate(-Math.PI / 2);
+                t.scale(-1, 1);
+                break;
+            case 6:
+                t.translate(h, 0);
+                t.rotate(Math.PI / 2);
+                break;
+            case 7:
+                t.translate(h, w);
+                t.scale(-1, -1);
+                t.rotate(-Math.PI / 2);
+                t.scale(-1, 1);
+                break;
+            case 8:
+                t.translate(0, w);
+                t.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                if (src.getType() == type) {
+                    return src;
+                }
+        }
+        boolean swap = orientation >= 5 && orientation <= 8;
+        BufferedImage dst = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = dst.createGraphics();
+        g.drawImage(src, t, null);
+        g.dispose();
+        return dst;
+    }
+
+    // 長辺が maxSize 以下になるまで半分ずつ縮小する（一度に縮小するより画質が良い）
+    private BufferedImage resize(BufferedImage src, int maxSize, int type) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        if (Math.max(w, h) <= maxSize) {
+            return src;
+        }
+        double scale = (double) maxSize / Math.max(w, h);
+        int targetW = Math.max(1, (int) Math.round(w * scale));
+        int targetH = Math.max(1, (int) Math.round(h * scale));
+
+        BufferedImage current = src;
+        int cw = w;
+        int ch = h;
+        do {
+            cw = Math.max(cw / 2, targetW);
+            ch = Math.max(ch / 2, targetH);
+            BufferedImage next = new BufferedImage(cw, ch, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, cw, ch, null);
+            g.dispose();
+            current = next;
+        } while (cw != targetW || ch != targetH);
+        return current;
+    }
+
+    private void write(BufferedImage image, OutputStream out, boolean png) throws IOException {
+        if (png) {
+            ImageIO.write(image, "png", out);
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    public record StoredImage(String imagePath, String mediumPath, String thumbnailPath) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.kaizen.service;
+
+import com.kaizen.live.CaseActivity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * いいねの付与・解除。likes の UNIQUE(case_id, user_id) 制約に依存し、
+ * 行の追加・削除と like_count の加減算を同一ステートメントで行う。
+ */
+@Service
+public class LikeService {
+
+    private static final String UNLIKE =
+        "WITH removed AS (" +
+        "  DELETE FROM likes WHERE case_id = ? AND user_id = ? RETURNING case_id" +
+        ") " +
+        "UPDATE improvement_cases SET like_count = like_count - (SELECT count(*) FROM removed) " +
+        "WHERE id = ? RETURNING like_count, (SELECT count(*) FROM removed)";
+
+    private static final String LIKE =
+        "WITH added AS (" +
+        "  INSERT INTO likes (case_id, user_id, created_at) " +
+        "  SELECT ?, ?, CURRENT_TIMESTAMP " +
+        "  WHERE EXISTS (SELECT 1 FROM users WHERE id = ?) " +
+        "  ON CONFLICT (case_id, user_id) DO NOTHING RETURNING case_id" +
+        ") " +
+        "UPDATE improvement_cases SET like_count = like_count + (SELECT count(*) FROM added) " +
+        "WHERE id = ? RETURNING like_count, (SELECT count(*) FROM added)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * いいね済みなら解除し、未いいねなら付与する。事例が存在しない場合は空を返す。
+     */
+    @Transactional
+    public Optional<LikeResult> toggle(Long caseId, Long userId) {
+        List<int[]> unliked = jdbcTemplate.query(UNLIKE,
+            (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, caseId, userId, caseId);
+        if (unliked.isEmpty()) {
+            return Optional.empty();
+        }
+        if (unliked.get(0)[1] > 0) {
+            statisticsService.countersChanged(caseId, 0, -1, 0);
+            eventPublisher.publishEvent(CaseActivity.likes(caseId, -1));
+            return Optional.of(new LikeResult(false, unliked.get(0)[0]));
+        }
+
+        // 事例の行は UNLIKE の UPDATE でロック済みのため、以降の INSERT の外部キーは満たされる
+        List<int[]> liked = jdbcTemplate.query(LIKE,
+            (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, caseId, userId, userId, caseId);
+        if (liked.isEmpty()) {
+            return Optional.empty();
+        }
+        boolean added = liked.get(0)[1] > 0;
+        if (added) {
+            statisticsService.countersChanged(caseId, 0, 1, 0);
+            eventPublisher.publishEvent(CaseActivity.likes(caseId, 1));
+        } else {
+            // 同時リクエストで既に付与済み、またはユーザーが存在しない場合
+            added = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM likes WHERE case_id = ? AND user_id = ?)",
+                Boolean.class, caseId, userId));
+        }
+        return Optional.of(new LikeResult(added, liked.get(0)[0]));
+    }
+
+    public record LikeResult(boolean liked, int likeCount) {
+    }
+}
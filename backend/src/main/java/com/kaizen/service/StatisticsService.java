@@ -0,0 +1,191 @@
+package com.kaizen.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工場・係・投稿月ごとの統計集計（case_statistics）。
+ * 投稿数と、その月に投稿された事例の閲覧数・いいね数・コメント数の合計を保持する。
+ * 事例の作成・削除やカウンターの変化に合わせて差分で更新し、rebuild() で全件から再計算できる。
+ */
+@Service
+public class StatisticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsService.class);
+
+    private static final String UPSERT_SUFFIX =
+        " ON CONFLICT (factory_id, department_id, stat_month) DO UPDATE SET " +
+        "post_count = case_statistics.post_count + EXCLUDED.post_count, " +
+        "view_count = case_statistics.view_count + EXCLUDED.view_count, " +
+        "like_count = case_statistics.like_count + EXCLUDED.like_count, " +
+        "comment_count = case_statistics.comment_count + EXCLUDED.comment_count";
+
+    // 事例1件分（投稿数1と現在のカウンター）を sign 倍して加算する
+    private static final String APPLY_CASE =
+        "INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count) " +
+        "SELECT c.factory_id, c.department_id, CAST(date_trunc('month', c.created_at) AS date), " +
+        "?, ? * c.view_count, ? * c.like_count, ? * c.comment_count " +
+        "FROM improvement_cases c WHERE c.id = ?" + UPSERT_SUFFIX;
+
+    // 複数の事例（一括インポート）を工場・係・投稿月ごとにまとめて加算する
+    private static final String APPLY_CASES =
+        "INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count) " +
+        "SELECT c.factory_id, c.department_id, CAST(date_trunc('month', c.created_at) AS date), " +
+        "count(*), COALESCE(sum(c.view_count), 0), COALESCE(sum(c.like_count), 0), COALESCE(sum(c.comment_count), 0) " +
+        "FROM improvement_cases c WHERE c.id = ANY(?) " +
+        "GROUP BY c.factory_id, c.department_id, CAST(date_trunc('month', c.created_at) AS date)" + UPSERT_SUFFIX;
+
+    private static final String APPLY_COUNTERS =
+        "INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count) " +
+        "SELECT c.factory_id, c.department_id, CAST(date_trunc('month', c.created_at) AS date), 0, ?, ?, ? " +
+        "FROM improvement_cases c WHERE c.id = ?" + UPSERT_SUFFIX;
+
+    private static final String REBUILD =
+        "INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count) " +
+        "SELECT factory_id, department_id, CAST(date_trunc('month', created_at) AS date), count(*), " +
+        "COALESCE(sum(view_count), 0), COALESCE(sum(like_count), 0), COALESCE(sum(comment_count), 0) " +
+        "FROM improvement_cases GROUP BY factory_id, department_id, CAST(date_trunc('month', created_at) AS date)";
+
+    private static final String SELECT_ALL =
+        "SELECT s.factory_id, f.name AS factory_name, s.department_id, d.name AS department_name, s.stat_month, " +
+        "s.post_count, s.view_count, s.like_count, s.comment_count " +
+        "FROM case_statistics s " +
+        "JOIN factories f ON f.id = s.factory_id " +
+        "JOIN departments d ON d.id = s.department_id " +
+        "ORDER BY s.stat_month, s.factory_id, s.department_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void caseCreated(Long caseId) {
+        applyCase(caseId, 1);
+    }
+
+    public void casesCreated(List<Long> caseIds) {
+        jdbcTemplate.update(APPLY_CASES, (Object) caseIds.toArray(new Long[0]));
+    }
+
+    // 削除前に呼び出すこと（事例の工場・係・投稿月を参照するため）
+    public void caseRemoved(Long caseId) {
+        applyCase(caseId, -1);
+    }
+
+    public void countersChanged(Long caseId, int views, int likes, int comments) {
+        jdbcTemplate.update(APPLY_COUNTERS, views, likes, comments, caseId);
+    }
+
+    public void viewsAdded(Map<Long, Integer> viewsByCase) {
+        List<Object[]> args = new ArrayList<>(viewsByCase.size());
+        viewsByCase.forEach((caseId, n) -> args.add(new Object[]{n, 0, 0, caseId}));
+        jdbcTemplate.batchUpdate(APPLY_COUNTERS, args);
+    }
+
+    @Transactional
+    public void rebuild() {
+        jdbcTemplate.update("DELETE FROM case_statistics");
+        int rows = jdbcTemplate.update(REBUILD);
+        log.info("Rebuilt case_statistics: {} rows", rows);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatistics() {
+        Totals total = new Totals();
+        Map<Long, Totals> byFactory = new LinkedHashMap<>();
+        Map<Long, Totals> byDepartment = new LinkedHashMap<>();
+        Map<String, Totals> monthly = new LinkedHashMap<>();
+        Map<Long, String> factoryNames = new HashMap<>();
+        Map<Long, String> departmentNames = new HashMap<>();
+        Map<Long, Long> departmentFactory = new HashMap<>();
+
+        jdbcTemplate.query(SELECT_ALL, rs -> {
+            long factoryId = rs.getLong("factory_id");
+            long departmentId = rs.getLong("department_id");
+            String month = rs.getDate("stat_month").toLocalDate().toString().substring(0, 7);
+            long posts = rs.getLong("post_count");
+            long views = rs.getLong("view_count");
+            long likes = rs.getLong("like_count");
+            long comments = rs.getLong("comment_count");
+
+            factoryNames.put(factoryId, rs.getString("factory_name"));
+            departmentNames.put(departmentId, rs.getString("department_name"));
+            departmentFactory.put(departmentId, factoryId);
+
+            total.add(posts, views, likes, comments);
+            byFactory.computeIfAbsent(factoryId, k -> new Totals()).add(posts, views, likes, comments);
+            byDepartment.computeIfAbsent(departmentId, k -> new Totals()).add(posts, views, likes, comments);
+            monthly.computeIfAbsent(month, k -> new Totals()).add(posts, views, likes, comments);
+        });
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalCases", total.posts);
+        stats.put("totalViews", total.views);
+        stats.put("totalLikes", total.likes);
+        stats.put("totalComments", total.comments);
+
+        List<Map<String, Object>> factories = new ArrayList<>();
+        byFactory.forEach((id, t) -> {
+            Map<String, Object> map = t.toMap();
+            map.put("factoryId", id);
+            map.put("factoryName", factoryNames.get(id));
+            factories.add(map);
+        });
+        stats.put("byFactory", factories);
+
+        List<Map<String, Object>> departments = new ArrayList<>();
+        byDepartment.forEach((id, t) -> {
+            Map<String, Object> map = t.toMap();
+            map.put("departmentId", id);
+            map.put("departmentName", departmentNames.get(id));
+            map.put("factoryId", departmentFactory.get(id));
+            map.put("factoryName", factoryNames.get(departmentFactory.get(id)));
+            departments.add(map);
+        });
+        stats.put("byDepartment", departments);
+
+        List<Map<String, Object>> months = new ArrayList<>();
+        monthly.forEach((month, t) -> {
+            Map<String, Object> map = t.toMap();
+            map.put("month", month);
+            months.add(map);
+        });
+        stats.put("monthly", months);
+        return stats;
+    }
+
+    private void applyCase(Long caseId, int sign) {
+        jdbcTemplate.update(APPLY_CASE, sign, sign, sign, sign, caseId);
+    }
+
+    private static class Totals {
+        long posts;
+        long views;
+        long likes;
+        long comments;
+
+        void add(long posts, long views, long likes, long comments) {
+            this.posts += posts;
+            this.views += views;
+            this.likes += likes;
+            this.comments += comments;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("postCount", posts);
+            map.put("viewCount", views);
+            map.put("likeCount", likes);
+            map.put("commentCount", comments);
+            return map;
+        }
+    }
+}
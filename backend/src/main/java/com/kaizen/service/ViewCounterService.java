@@ -0,0 +1,263 @@
+package com.kaizen.service;
+
+import com.kaizen.live.CaseActivity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 閲覧記録の書き込み遅延（write-behind）。
+ * 同日・同ユーザーの重複をメモリ上で除外し、一定間隔で view_logs への一括INSERTと
+ * 事例ごとの view_count・月別閲覧数（case_monthly_views）の加算をまとめて行う。
+ */
+@Service
+public class ViewCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewCounterService.class);
+
+    private static final String INSERT_VIEW_LOGS =
+        "INSERT INTO view_logs (case_id, user_id, viewed_date, created_at) " +
+        "SELECT v.case_id, v.user_id, v.viewed_date, CURRENT_TIMESTAMP " +
+        "FROM unnest(?::bigint[], ?::bigint[], ?::date[]) AS v(case_id, user_id, viewed_date) " +
+        "WHERE EXISTS (SELECT 1 FROM improvement_cases c WHERE c.id = v.case_id) " +
+        "AND EXISTS (SELECT 1 FROM users u WHERE u.id = v.user_id) " +
+        "ON CONFLICT (case_id, user_id, viewed_date) DO NOTHING " +
+        "RETURNING case_id, viewed_date";
+
+    private static final String INCREMENT_VIEW_COUNT =
+        "UPDATE improvement_cases SET view_count = view_count + ? WHERE id = ?";
+
+    private static final String INCREMENT_MONTHLY_VIEWS =
+        "INSERT INTO case_monthly_views (case_id, view_month, view_count) VALUES (?, ?, ?) " +
+        "ON CONFLICT (case_id, view_month) DO UPDATE " +
+        "SET view_count = case_monthly_views.view_count + EXCLUDED.view_count";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private CaseCacheService caseCacheService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${view.queue.max-size:10000}")
+    private int maxQueueSize;
+
+    @Value("${view.dedupe.max-entries:500000}")
+    private int maxDedupeEntries;
+
+    private final Queue<PendingView> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong flushedViews = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    // DB書き込み中に保持するため synchronized ではなくロックを使う（仮想スレッドをキャリアに固定しない）
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // (case_id, user_id) を1つのlongに詰めた当日分の既読セット
+    private volatile LocalDate dedupeDay = LocalDate.now();
+    private volatile Set<Long> seenToday = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("kaizen.views.queue.depth", queueSize, AtomicInteger::get)
+            .description("Views waiting to be flushed")
+            .register(meterRegistry);
+        Gauge.builder("kaizen.views.dedupe.entries", this, s -> s.seenToday.size())
+            .description("Entries in today's in-memory view dedupe set")
+            .register(meterRegistry);
+        Gauge.builder("kaizen.views.flushed", flushedViews, AtomicLong::get)
+            .description("Views persisted by the write-behind flush")
+            .register(meterRegistry);
+        Gauge.builder("kaizen.views.flush.failures", failedFlushes, AtomicLong::get)
+            .description("Failed write-behind flushes")
+            .register(meterRegistry);
+    }
+
+    public void recordView(Long caseId, Long userId) {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(dedupeDay)) {
+            rollDay(today);
+        }
+
+        // 詰められないIDや上限超過時はDB側の ON CONFLICT に重複除外を任せる
+        if (caseId <= Integer.MAX_VALUE && userId <= Integer.MAX_VALUE) {
+            Set<Long> seen = seenToday;
+            long key = (caseId << 32) | userId;
+            if (seen.contains(key)) {
+                return;
+            }
+            if (seen.size() < maxDedupeEntries) {
+                seen.add(key);
+            }
+        }
+
+        queue.add(new PendingView(caseId, userId, today));
+        if (queueSize.incrementAndGet() >= maxQueueSize && flushLock.tryLock()) {
+            // キューが溢れる場合は呼び出し元スレッドで書き出してメモリを抑える。書き出し中なら待たずに任せる
+            try {
+                drain();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueSize.get();
+    }
+
+    @Scheduled(fixedDelayString = "${view.flush.interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<PendingView> batch = new ArrayList<>();
+        PendingView view;
+        while ((view = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            batch.add(view);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> increments;
+        try {
+            increments = transactionTemplate.execute(status -> persist(batch));
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            log.error("Failed to flush {} views; requeueing", batch.size(), e);
+            requeue(batch);
+            return;
+        }
+        flushedViews.addAndGet(batch.size());
+        // コミット後にキャッシュ済みの事例詳細を破棄し、購読中の画面に閲覧数の増加を送る
+        // （ここで失敗しても記録済みの閲覧は戻さない。終了時はライブ更新が先に停止していることがある）
+        caseCacheService.evictAll(increments.keySet());
+        try {
+            increments.forEach((caseId, n) -> eventPublisher.publishEvent(CaseActivity.views(caseId, n)));
+        } catch (RuntimeException e) {
+            log.debug("Could not publish view counts", e);
+        }
+    }
+
+    private Map<Long, Integer> persist(List<PendingView> batch) {
+        Long[] caseIds = new Long[batch.size()];
+        Long[] userIds = new Long[batch.size()];
+        Date[] dates = new Date[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingView v = batch.get(i);
+            caseIds[i] = v.caseId();
+            userIds[i] = v.userId();
+            dates[i] = Date.valueOf(v.viewedDate());
+        }
+
+        // 実際に挿入された行だけを事例ごと・月ごとに集計する
+        Map<Long, Integer> increments = new HashMap<>();
+        Map<MonthlyKey, Integer> monthlyIncrements = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_VIEW_LOGS);
+            Array caseArray = con.createArrayOf("bigint", caseIds);
+            Array userArray = con.createArrayOf("bigint", userIds);
+            Array dateArray = con.createArrayOf("date", dates);
+            ps.setArray(1, caseArray);
+            ps.setArray(2, userArray);
+            ps.setArray(3, dateArray);
+            return ps;
+        }, rs -> {
+            long caseId = rs.getLong(1);
+            LocalDate month = rs.getDate(2).toLocalDate().withDayOfMonth(1);
+            increments.merge(caseId, 1, Integer::sum);
+            monthlyIncrements.merge(new MonthlyKey(caseId, month), 1, Integer::sum);
+        });
+
+        if (increments.isEmpty()) {
+            return increments;
+        }
+        List<Object[]> args = new ArrayList<>(increments.size());
+        increments.forEach((caseId, n) -> args.add(new Object[]{n, caseId}));
+        jdbcTemplate.batchUpdate(INCREMENT_VIEW_COUNT, args);
+        statisticsService.viewsAdded(increments);
+
+        List<Object[]> monthlyArgs = new ArrayList<>(monthlyIncrements.size());
+        monthlyIncrements.forEach((key, n) -> monthlyArgs.add(new Object[]{key.caseId(), Date.valueOf(key.month()), n}));
+        jdbcTemplate.batchUpdate(INCREMENT_MONTHLY_VIEWS, monthlyArgs);
+        return increments;
+    }
+
+    private void requeue(List<PendingView> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingView v = batch.get(i);
+            if (queueSize.get() >= maxQueueSize) {
+                log.warn("View queue full; dropping {} unflushed views", batch.size() - i);
+                return;
+            }
+            queue.add(v);
+            queueSize.incrementAndGet();
+        }
+    }
+
+    private synchronized void rollDay(LocalDate today) {
+        if (!today.equals(dedupeDay)) {
+            seenToday = ConcurrentHashMap.newKeySet();
+            dedupeDay = today;
+        }
+    }
+
+    private record PendingView(Long caseId, Long userId, LocalDate viewedDate) {
+    }
+
+    private record MonthlyKey(long caseId, LocalDate month) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.kaizen.sql;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * エンドポイントが1リクエストで実行してよいSQLの数。
+ * 超えた場合は sql.budget.mode に従って警告ログを出すか、リクエストを失敗させる。
+ * 指定のないエンドポイントには sql.budget.default-statements を適用する。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface SqlBudget {
+
+    // 件数に比例してSQLを実行する一括処理など、上限を決めないエンドポイント（集計はメトリクスに記録する）
+    int UNLIMITED = Integer.MAX_VALUE;
+
+    int statements();
+}
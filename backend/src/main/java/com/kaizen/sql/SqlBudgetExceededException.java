@@ -0,0 +1,15 @@
+package com.kaizen.sql;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * sql.budget.mode=fail のとき、SQLの数が予算を超えたリクエストを失敗させる。
+ */
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class SqlBudgetExceededException extends RuntimeException {
+
+    public SqlBudgetExceededException(String message) {
+        super(message);
+    }
+}
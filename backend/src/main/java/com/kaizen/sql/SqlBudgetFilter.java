@@ -0,0 +1,39 @@
+package com.kaizen.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * リクエストの処理中に実行したSQLを数え、終了時に予算と照合する。
+ * 認証などのフィルタで実行したSQLも含めるため、最も外側で実行する。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private SqlBudgetGuard guard;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = SqlStatementCounter.begin();
+        try {
+            chain.doFilter(request, response);
+            // 本文のない応答（204・リダイレクトなど）はここでヘッダーを付ける
+            guard.beforeCommit(request, response);
+        } finally {
+            SqlStatementCounter.end();
+            guard.afterCompletion(request, statistics);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.kaizen.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * リクエストごとのSQLの数をエンドポイントの予算（{@link SqlBudget}）と照合する。
+ * 予算を超えた場合、warn では警告ログを出し、fail（テスト・CI向け）ではリクエストを失敗させる。
+ * debug-header を有効にすると応答に X-Sql-Statistics ヘッダーで集計を付ける。
+ */
+@Component
+public class SqlBudgetGuard {
+
+    public static final String HEADER = "X-Sql-Statistics";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlBudgetGuard.class);
+
+    // 同じリクエストを応答の書き出し前とフィルタの終了時で二重に判定しない
+    private static final String CHECKED_ATTRIBUTE = SqlBudgetGuard.class.getName() + ".CHECKED";
+
+    public enum Mode { OFF, WARN, FAIL }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sql.budget.mode:warn}")
+    private Mode mode;
+
+    @Value("${sql.budget.default-statements:10}")
+    private int defaultStatements;
+
+    @Value("${sql.budget.debug-header:false}")
+    private boolean debugHeader;
+
+    @PostConstruct
+    public void registerMetrics() {
+        FunctionCounter.builder("kaizen.sql.background.statements", this, g -> SqlStatementCounter.backgroundStatements())
+            .description("SQL statements executed outside of a request")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 応答ヘッダーを付け、予算を確認する。応答の書き出し前に呼ぶ。
+     * fail で予算を超えていれば {@link SqlBudgetExceededException} を投げる。
+     */
+    public void beforeCommit(HttpServletRequest request, HttpServletResponse response) {
+        SqlStatistics statistics = SqlStatementCounter.current();
+        if (statistics == null || response.isCommitted()) {
+            return;
+        }
+        if (debugHeader) {
+            response.setHeader(HEADER, statistics.toString());
+        }
+        String violation = check(request, statistics);
+        if (violation != null && mode == Mode.FAIL) {
+            throw new SqlBudgetExceededException(violation);
+        }
+    }
+
+    /**
+     * リクエストの終了時に集計をメトリクスに記録する。例外で終わった場合など
+     * 書き出し前に確認できなかったリクエストは、ここで予算を確認して警告ログだけを出す。
+     */
+    public void afterCompletion(HttpServletRequest request, SqlStatistics statistics) {
+        String uri = patternOf(request);
+        DistributionSummary.builder("kaizen.sql.statements")
+            .description("SQL statements executed per request")
+            .tags("method", request.getMethod(), "uri", uri)
+            .register(meterRegistry)
+            .record(statistics.getStatements());
+        DistributionSummary.builder("kaizen.sql.rows")
+            .description("Rows read or updated per request")
+            .tags("method", request.getMethod(), "uri", uri)
+            .register(meterRegistry)
+            .record(statistics.getRows());
+
+        check(request, statistics);
+    }
+
+    private String check(HttpServletRequest request, SqlStatistics statistics) {
+        if (mode == Mode.OFF || request.getAttribute(CHECKED_ATTRIBUTE) != null) {
+            return null;
+        }
+        request.setAttribute(CHECKED_ATTRIBUTE, Boolean.TRUE);
+        int budget = budgetOf(request);
+        if (statistics.getStatements() <= budget) {
+            return null;
+        }
+        String violation = String.format("SQL budget exceeded: %s %s executed %s (budget %d statements)",
+            request.getMethod(), patternOf(request), statistics, budget);
+        log.warn(violation);
+        return violation;
+    }
+
+    private int budgetOf(HttpServletRequest request) {
+        if (request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler) {
+            SqlBudget budget = AnnotatedElementUtils.findMergedAnnotation(handler.getMethod(), SqlBudget.class);
+            if (budget == null) {
+                budget = AnnotatedElementUtils.findMergedAnnotation(handler.getBeanType(), SqlBudget.class);
+            }
+            if (budget != null) {
+                return budget.statements();
+            }
+        }
+        return defaultStatements;
+    }
+
+    private static String patternOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
@@ -0,0 +1,146 @@
+package com.kaizen.sql;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource をラップし、実行したSQLの数・行数・時間をスレッドごとに数える。
+ * {@link #begin()} から {@link #end()} までの間に同じスレッドで実行したSQLをそのリクエストに計上し、
+ * それ以外（閲覧数の定期書き込み、ストリーミング応答の書き出しなど）はリクエスト外として数える。
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+    private static final LongAdder BACKGROUND_STATEMENTS = new LongAdder();
+
+    private SqlStatementCounter() {
+    }
+
+    public static SqlStatistics begin() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    public static long backgroundStatements() {
+        return BACKGROUND_STATEMENTS.sum();
+    }
+
+    /**
+     * 接続プール（HikariDataSource など）の close は引き継ぐ。Bean を置き換えても、
+     * コンテキストの終了時に推定される破棄メソッドでプールが閉じられる。
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            return proxy(dataSource, DataSource.class, AutoCloseable.class);
+        }
+        return proxy(dataSource, DataSource.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Object target, Class<?>... types) {
+        InvocationHandler handler = (p, method, args) -> {
+            boolean execute = method.getName().startsWith("execute");
+            long start = execute ? System.nanoTime() : 0;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (execute) {
+                recordStatement(result, System.nanoTime() - start);
+            }
+            return wrap(method, result);
+        };
+        return (T) Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(), types, handler);
+    }
+
+    private static Object wrap(Method method, Object result) {
+        String name = method.getName();
+        if (result instanceof Connection connection && name.equals("getConnection")) {
+            return proxy(connection, Connection.class);
+        }
+        if (result instanceof CallableStatement statement && name.equals("prepareCall")) {
+            return proxy(statement, CallableStatement.class);
+        }
+        if (result instanceof PreparedStatement statement && name.equals("prepareStatement")) {
+            return proxy(statement, PreparedStatement.class);
+        }
+        if (result instanceof Statement statement && name.equals("createStatement")) {
+            return proxy(statement, Statement.class);
+        }
+        // 読み込んだ行数は ResultSet#next で数える
+        if (result instanceof ResultSet resultSet && (name.equals("executeQuery") || name.equals("getResultSet"))
+                && CURRENT.get() != null) {
+            return countingResultSet(resultSet);
+        }
+        return result;
+    }
+
+    private static void recordStatement(Object result, long elapsedNanos) {
+        SqlStatistics statistics = CURRENT.get();
+        if (statistics == null) {
+            BACKGROUND_STATEMENTS.increment();
+            return;
+        }
+        statistics.record(updatedRows(result), elapsedNanos);
+    }
+
+    private static long updatedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(count, 0);
+        }
+        if (result instanceof Long count) {
+            return Math.max(count, 0);
+        }
+        // バッチは1往復として数え、行数は各文の合計とする（件数不明の -2 は数えない）
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+
+    private static ResultSet countingResultSet(ResultSet target) {
+        InvocationHandler handler = (p, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                SqlStatistics statistics = CURRENT.get();
+                if (statistics != null) {
+                    statistics.addRows(1);
+                }
+            }
+            return result;
+        };
+        return (ResultSet) Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(), new Class<?>[]{ResultSet.class}, handler);
+    }
+}
@@ -0,0 +1,41 @@
+package com.kaizen.sql;
+
+/**
+ * 1リクエストで実行したSQLの集計。リクエストを処理するスレッドだけが更新する。
+ */
+public final class SqlStatistics {
+
+    private long statements;
+    private long rows;
+    private long nanos;
+
+    void record(long rowCount, long elapsedNanos) {
+        statements++;
+        rows += rowCount;
+        nanos += elapsedNanos;
+    }
+
+    void addRows(long rowCount) {
+        rows += rowCount;
+    }
+
+    /** 実行したSQLの数（バッチは1回と数える） */
+    public long getStatements() {
+        return statements;
+    }
+
+    /** 読み込んだ行数と更新した行数の合計 */
+    public long getRows() {
+        return rows;
+    }
+
+    /** SQLの実行にかかった時間（結果の読み込みは含まない） */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("statements=%d, rows=%d, time=%.1fms", statements, rows, nanos / 1_000_000.0);
+    }
+}
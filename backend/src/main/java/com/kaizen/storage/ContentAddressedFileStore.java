@@ -0,0 +1,241 @@
+package com.kaizen.storage;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * 内容のSHA-256で名前を付けるファイルストア。書き込みながらハッシュを計算し、
+ * 先頭2桁ずつの2階層のディレクトリ（ab/cd/abcd….jpg）に置く。
+ * 同じ内容は1ファイルにまとめ、参照数を stored_files で管理する。
+ *
+ * 参照の追加とファイルの配置は stored_files の行ロックを保持したトランザクション内で行う。
+ * 参照の解除は先にコミットし（参照数0の行を残す）、その後の別のトランザクションで参照数0のままの行を
+ * 削除してロックしたうえでファイルを削除する。解除が取り消されて参照が残ったままファイルだけが消えることはなく、
+ * 同じ内容の保存と削除が並行しても、保存側は行ロックで待たされるため配置済みのファイルを失わない。
+ */
+@Component
+public class ContentAddressedFileStore implements FileStore {
+
+    private static final String METRIC = "kaizen.file.store";
+    private static final String TEMP_DIR = ".tmp";
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+
+    private static final String RETAIN =
+        "INSERT INTO stored_files (path, ref_count, size_bytes, created_at) VALUES (?, 1, ?, CURRENT_TIMESTAMP) " +
+        "ON CONFLICT (path) DO UPDATE SET ref_count = stored_files.ref_count + 1";
+
+    private static final String RETAIN_EXISTING =
+        "UPDATE stored_files SET ref_count = ref_count + 1 WHERE path = ?";
+
+    private static final String RETAIN_ALL =
+        "UPDATE stored_files s SET ref_count = s.ref_count + r.n FROM unnest(?::text[], ?::int[]) AS r(path, n) " +
+        "WHERE s.path = r.path";
+
+    private static final String LOCK =
+        "SELECT path FROM stored_files WHERE path = ANY(?) ORDER BY path FOR UPDATE";
+
+    private static final String RELEASE =
+        "UPDATE stored_files s SET ref_count = s.ref_count - r.n FROM unnest(?::text[], ?::int[]) AS r(path, n) " +
+        "WHERE s.path = r.path RETURNING s.path, s.ref_count";
+
+    private static final String DELETE_UNREFERENCED =
+        "DELETE FROM stored_files WHERE path = ANY(?) AND ref_count <= 0 RETURNING path";
+
+    @Value("${file.upload.dir}")
+    private String uploadDir;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Path root;
+    private Path tempDir;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        tempDir = root.resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        // 呼び出し元のトランザクションとは独立させ、行ロックを短時間で解放する
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // 処理時間は kaizen.file.store（method ごと）に記録する
+    @Timed(METRIC)
+    @Override
+    public String store(String extension, ContentWriter writer) throws IOException {
+        // 元のファイル名由来の拡張子はパスに使えるものだけ残す
+        String suffix = extension != null ? extension.toLowerCase(Locale.ROOT) : "";
+        if (!EXTENSION.matcher(suffix).matches()) {
+            suffix = "";
+        }
+        Path temp = Files.createTempFile(tempDir, "upload-", suffix);
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+                writer.writeTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String relativePath = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + suffix;
+            String path = URL_PREFIX + relativePath;
+            long size = Files.size(temp);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(RETAIN, path, size);
+                // 同じ内容が既に配置済みなら一時ファイルは捨てる
+                try {
+                    Path target = root.resolve(relativePath);
+                    if (!Files.exists(target)) {
+                        Files.createDirectories(target.getParent());
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } catch (FileAlreadyExistsException e) {
+                    // 参照の記録前に置かれた同じ内容のファイルがある
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return path;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Timed(METRIC)
+    @Override
+    public String store(InputStream in, String extension) throws IOException {
+        return FileStore.super.store(in, extension);
+    }
+
+    @Timed(METRIC)
+    @Override
+    public void retain(String path) {
+        jdbcTemplate.update(RETAIN_EXISTING, path);
+    }
+
+    @Timed(METRIC)
+    @Override
+    public void retainAll(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String path : paths) {
+            counts.merge(path, 1, Integer::sum);
+        }
+        String[] keys = counts.keySet().toArray(new String[0]);
+        // 解除と同じくパスの順に行ロックを取り、並行する解除とデッドロックしないようにする
+        jdbcTemplate.queryForList(LOCK, String.class, (Object) keys);
+        jdbcTemplate.update(RETAIN_ALL, keys, counts.values().toArray(new Integer[0]));
+    }
+
+    @Timed(METRIC)
+    @Override
+    public void release(Collection<String> paths) throws IOException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        // パスごとに解除する参照の数をまとめ、件数によらず3回のSQLで解除・削除する
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String path : paths) {
+            counts.merge(path, 1, Integer::sum);
+        }
+        String[] keys = counts.keySet().toArray(new String[0]);
+        Integer[] decrements = counts.values().toArray(new Integer[0]);
+        List<String> unreferenced = transactionTemplate.execute(status -> {
+            // 並行する解除どうしがデッドロックしないよう、パスの順に行ロックを取る
+            jdbcTemplate.queryForList(LOCK, String.class, (Object) keys);
+            List<String> released = jdbcTemplate.query(RELEASE,
+                (rs, i) -> rs.getInt("ref_count") <= 0 ? rs.getString("path") : null, keys, decrements);
+            released.removeIf(Objects::isNull);
+            return released;
+        });
+        // 参照数を管理していないファイル（旧形式のUUID名）は行がないため削除しない
+        if (unreferenced.isEmpty()) {
+            return;
+        }
+
+        // 解除のコミット後に、その間に再び参照されていない行だけを削除してファイルを消す
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> deleted = jdbcTemplate.queryForList(DELETE_UNREFERENCED, String.class,
+                    (Object) unreferenced.toArray(new String[0]));
+                for (String path : deleted) {
+                    Optional<Path> file = locate(path.substring(URL_PREFIX.length()));
+                    if (file.isPresent()) {
+                        try {
+                            Files.deleteIfExists(file.get());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Timed(METRIC)
+    @Override
+    public Optional<Path> resolve(String relativePath) {
+        return locate(relativePath).filter(Files::isRegularFile).filter(Files::isReadable);
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    private Optional<Path> locate(String relativePath) {
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root) || file.startsWith(tempDir)) {
+            return Optional.empty();
+        }
+        return Optional.of(file);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
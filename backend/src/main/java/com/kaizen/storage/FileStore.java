@@ -0,0 +1,56 @@
+package com.kaizen.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * アップロードファイルの保存先。保存したファイルは URL_PREFIX から始まる公開パスで参照する。
+ * 同じ公開パスが複数の行から参照されうるため、参照を追加・解除する形で管理し、
+ * 参照がなくなったファイルだけを削除する。
+ */
+public interface FileStore {
+
+    String URL_PREFIX = "/uploads/";
+
+    /**
+     * writer が書き出した内容を保存し、参照を1つ追加して公開パスを返す。
+     */
+    String store(String extension, ContentWriter writer) throws IOException;
+
+    default String store(InputStream in, String extension) throws IOException {
+        return store(extension, in::transferTo);
+    }
+
+    /**
+     * 保存済みのファイルに参照を1つ追加する。
+     */
+    void retain(String path);
+
+    /**
+     * 保存済みのファイルに参照をまとめて追加する（同じパスが複数含まれる場合はその数だけ）。
+     * 参照数を管理していないパスは無視する。
+     */
+    void retainAll(Collection<String> paths);
+
+    /**
+     * 各パスの参照を1つずつ解除し（同じパスが複数含まれる場合はその数だけ）、
+     * 参照がなくなったファイルを削除する。
+     */
+    void release(Collection<String> paths) throws IOException;
+
+    /**
+     * URL_PREFIX 以降の相対パスに対応する読み取り可能なファイルを返す。
+     */
+    Optional<Path> resolve(String relativePath);
+
+    Path getRoot();
+
+    @FunctionalInterface
+    interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
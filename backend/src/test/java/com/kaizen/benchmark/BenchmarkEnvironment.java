@@ -0,0 +1,245 @@
+package com.kaizen.benchmark;
+
+import com.kaizen.KaizenApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * テスト・ベンチマーク用の実行環境。埋め込みPostgreSQLに本番と同じスキーマを作成し、
+ * 指定件数の事例を投入してからアプリケーションコンテキストを起動する。
+ * JMH のフォークごと（テストは JVM ごと）に1回だけ起動し、同じ件数を使うテスト・ベンチマークで共有する。
+ *
+ * システムプロパティ kaizen.bench.replicas に台数を指定すると、投入後のデータベースを複製した
+ * ストリーミングレプリカを起動し、読み取り専用の処理をレプリカに振り分ける設定で起動する。
+ */
+public final class BenchmarkEnvironment implements AutoCloseable {
+
+    public static final String USERNAME = "bench_user";
+    public static final String PASSWORD = "bench_password";
+
+    private static final String SCHEMA_PATH = System.getProperty("kaizen.bench.schema", "../database/init/schema.sql");
+    private static final int USER_COUNT = 100;
+    private static final int IMAGES_PER_CASE = 3;
+    // データディレクトリの複製に含めないファイル（起動中のサーバーのもの）
+    private static final Set<String> NOT_COPIED = Set.of("postmaster.pid", "postmaster.opts", "epg-lock");
+
+    private static BenchmarkEnvironment current;
+
+    private final int caseCount;
+    private final Class<?>[] extraSources;
+    private final EmbeddedPostgres postgres;
+    private final Path dataDir;
+    private final List<EmbeddedPostgres> replicas = new ArrayList<>();
+    private final List<Path> replicaDirs = new ArrayList<>();
+    private final Path uploadDir;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(int caseCount, Class<?>[] extraSources) throws IOException, SQLException {
+        this.caseCount = caseCount;
+        this.extraSources = extraSources;
+        this.dataDir = Files.createTempDirectory("kaizen-bench-pg");
+        this.postgres = EmbeddedPostgres.builder().setDataDirectory(dataDir).start();
+        this.uploadDir = Files.createTempDirectory("kaizen-bench-uploads");
+        DataSource dataSource = postgres.getPostgresDatabase();
+        try (Connection connection = dataSource.getConnection()) {
+            createSchema(connection);
+            seed(connection, caseCount);
+        }
+        for (int i = Integer.getInteger("kaizen.bench.replicas", 0); i > 0; i--) {
+            startReplica();
+        }
+        this.context = startApplication();
+    }
+
+    /**
+     * 指定件数で投入済みの環境を返す。件数や追加の設定クラスが変わった場合は作り直す。
+     */
+    public static synchronized BenchmarkEnvironment get(int caseCount, Class<?>... extraSources)
+            throws IOException, SQLException {
+        if (current != null && (current.caseCount != caseCount || !Arrays.equals(current.extraSources, extraSources))) {
+            current.close();
+            current = null;
+        }
+        if (current == null) {
+            current = new BenchmarkEnvironment(caseCount, extraSources);
+        }
+        return current;
+    }
+
+    /**
+     * 起動中の環境を停止する。フォークしたJVMが終了できるよう、各ベンチマークの最後に呼ぶ。
+     */
+    public static synchronized void shutdown() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int getPort() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        for (EmbeddedPostgres replica : replicas) {
+            replica.close();
+        }
+        postgres.close();
+        for (Path dir : replicaDirs) {
+            deleteRecursively(dir);
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        SpringApplication application = new SpringApplication(KaizenApplication.class);
+        application.addPrimarySources(Arrays.asList(extraSources));
+        String replicaUrls = replicas.stream()
+            .map(replica -> replica.getJdbcUrl("postgres", "postgres"))
+            .collect(Collectors.joining(","));
+        return application.run(
+            "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--datasource.replica.urls=" + replicaUrls,
+            "--file.upload.dir=" + uploadDir,
+            "--server.port=0",
+            "--management.server.port=0",
+            "--logging.level.root=WARN"
+        );
+    }
+
+    /**
+     * 起動中のプライマリのデータディレクトリをオンラインバックアップの手順で複製し、スタンバイとして起動する
+     * （埋め込みPostgreSQLには pg_basebackup が含まれないため）。
+     */
+    private void startReplica() throws IOException, SQLException {
+        Path replicaDir = Files.createTempDirectory("kaizen-bench-replica");
+        replicaDirs.add(replicaDir);
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_start_backup('kaizen-bench-replica', true, false)");
+            copyDataDirectory(replicaDir);
+            try (ResultSet rs = statement.executeQuery("SELECT labelfile FROM pg_stop_backup(false, false)")) {
+                rs.next();
+                Files.writeString(replicaDir.resolve("backup_label"), rs.getString(1));
+            }
+        }
+        Files.createFile(replicaDir.resolve("standby.signal"));
+        Files.writeString(replicaDir.resolve("postgresql.auto.conf"),
+            "primary_conninfo = 'host=localhost port=" + postgres.getPort() + " user=postgres'\n",
+            StandardOpenOption.APPEND);
+        replicas.add(EmbeddedPostgres.builder().setDataDirectory(replicaDir).setCleanDataDirectory(false).start());
+    }
+
+    private void copyDataDirectory(Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(dataDir)) {
+            for (Path source : (Iterable<Path>) paths::iterator) {
+                Path relative = dataDir.relativize(source);
+                if (NOT_COPIED.contains(relative.toString())) {
+                    continue;
+                }
+                try {
+                    Files.copy(source, target.resolve(relative.toString()));
+                } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                    // 複製先のルート、または複製中に削除された一時ファイル
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static void createSchema(Connection connection) throws IOException, SQLException {
+        String schema = Files.readString(Paths.get(SCHEMA_PATH));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(schema);
+        }
+    }
+
+    /**
+     * 利用者・事例・画像を generate_series でまとめて投入し、集計テーブルを作り直す。
+     * 閲覧数・いいね数・作成日時は並び替えで偏らないよう散らしておく。
+     */
+    private static void seed(Connection connection, int caseCount) throws SQLException {
+        String hash = new BCryptPasswordEncoder().encode(PASSWORD);
+        try (PreparedStatement users = connection.prepareStatement(
+                "INSERT INTO users (username, password, email) " +
+                "SELECT CASE WHEN g = 1 THEN ? ELSE 'bench_user_' || g END, ?, 'bench' || g || '@example.com' " +
+                "FROM generate_series(1, ?) g")) {
+            users.setString(1, USERNAME);
+            users.setString(2, hash);
+            users.setInt(3, USER_COUNT);
+            users.executeUpdate();
+        }
+
+        try (PreparedStatement cases = connection.prepareStatement(
+                "WITH d AS (SELECT id, factory_id, row_number() OVER (ORDER BY id) - 1 AS n FROM departments), " +
+                "u AS (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM users) " +
+                "INSERT INTO improvement_cases (title, description, factory_id, department_id, user_id, " +
+                "view_count, like_count, comment_count, created_at, updated_at) " +
+                "SELECT '改善事例 ' || g || ' 段取り時間の短縮', " +
+                "repeat('作業手順を見直し、治具を共通化して段取り時間を短縮した。', 1 + g % 8) || ' #' || g, " +
+                "d.factory_id, d.id, u.id, CAST((CAST(g AS bigint) * 7919) % 5000 AS int), CAST((CAST(g AS bigint) * 104729) % 300 AS int), g % 25, " +
+                "now() - make_interval(mins => g * 13), now() - make_interval(mins => g * 13) " +
+                "FROM generate_series(1, ?) g " +
+                "JOIN d ON d.n = g % (SELECT count(*) FROM departments) " +
+                "JOIN u ON u.n = g % (SELECT count(*) FROM users)")) {
+            cases.setInt(1, caseCount);
+            cases.executeUpdate();
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(
+                "INSERT INTO case_images (case_id, image_path, medium_path, thumbnail_path, image_order) " +
+                "SELECT c.id, '/uploads/' || md5(c.id || '-' || o) || '.jpg', " +
+                "'/uploads/' || md5(c.id || '-' || o) || '_m.jpg', '/uploads/' || md5(c.id || '-' || o) || '_t.jpg', o " +
+                "FROM improvement_cases c CROSS JOIN generate_series(0, " + (IMAGES_PER_CASE - 1) + ") o");
+            statement.executeUpdate(
+                "INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count) " +
+                "SELECT factory_id, department_id, CAST(date_trunc('month', created_at) AS date), " +
+                "count(*), sum(view_count), sum(like_count), sum(comment_count) " +
+                "FROM improvement_cases GROUP BY 1, 2, 3");
+            statement.execute("ANALYZE");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.kaizen.controller;
+
+import com.kaizen.benchmark.BenchmarkEnvironment;
+import com.kaizen.sql.SqlBudgetGuard;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 一覧のSQLの実行回数がページの件数によらず一定であることを確認する。
+ * 関連（工場・係・投稿者）と画像パスを事例ごとに読むと、件数に比例して増える。
+ */
+class CaseListStatementCountTest {
+
+    private static final int CASE_COUNT = 200;
+    // 上限（100件）を超える指定は上限に丸められる
+    private static final int[] PAGE_SIZES = {1, 20, 100, 200};
+    private static final Pattern STATISTICS = Pattern.compile("statements=(\\d+), rows=(\\d+)");
+
+    private static BenchmarkEnvironment environment;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeAll
+    static void start() throws Exception {
+        environment = BenchmarkEnvironment.get(CASE_COUNT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sortBy=date", "sortBy=likes", "sortBy=views", "keyword=段取り", "sortBy=date&keyword=治具"})
+    void statementCountDoesNotGrowWithPageSize(String query) throws Exception {
+        List<Long> statements = new ArrayList<>();
+        List<Long> rows = new ArrayList<>();
+        for (int limit : PAGE_SIZES) {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(
+                    "http://localhost:" + environment.getPort() + "/api/cases?" + encode(query) + "&limit=" + limit)).build(),
+                HttpResponse.BodyHandlers.discarding());
+            assertEquals(200, response.statusCode(), query + " limit=" + limit);
+            Matcher matcher = STATISTICS.matcher(response.headers().firstValue(SqlBudgetGuard.HEADER).orElseThrow());
+            assertTrue(matcher.find());
+            statements.add(Long.valueOf(matcher.group(1)));
+            rows.add(Long.valueOf(matcher.group(2)));
+        }
+
+        assertTrue(rows.get(0) < rows.get(2), () -> "pages did not grow: rows=" + rows);
+        assertEquals(1, statements.stream().distinct().count(),
+            () -> query + ": statements for limit " + Arrays.toString(PAGE_SIZES) + " -> " + statements);
+    }
+
+    // 値だけを符号化する（= と & はそのまま）
+    private static String encode(String query) {
+        StringBuilder encoded = new StringBuilder();
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (encoded.length() > 0) {
+                encoded.append('&');
+            }
+            encoded.append(parts[0]).append('=').append(URLEncoder.encode(parts[1], StandardCharsets.UTF_8));
+        }
+        return encoded.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.kaizen.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaizen.benchmark.BenchmarkEnvironment;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 全件の書き出し（/api/cases/stream）が、同じキーワード・並び順の一覧（/api/cases をページ送りで全件）と
+ * 同じ事例を同じ順で返すことを確認する。日本語・1〜2文字（search_grams）と3文字以上の ASCII（トライグラム）の両方を確かめる。
+ */
+class CaseStreamSearchTest {
+
+    private static final int CASE_COUNT = 200;
+
+    private static BenchmarkEnvironment environment;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void start() throws Exception {
+        environment = BenchmarkEnvironment.get(CASE_COUNT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"keyword=段取り", "keyword=治具", "keyword=12", "keyword=#12", "keyword=#12&sortBy=likes"})
+    void streamReturnsTheSameCasesAsTheList(String query) throws Exception {
+        String baseUrl = "http://localhost:" + environment.getPort();
+        String encoded = encode(query);
+
+        List<Long> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> page = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases?" + encoded
+                    + "&limit=100" + (cursor != null ? "&cursor=" + cursor : ""))).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, page.statusCode(), query);
+            objectMapper.readTree(page.body()).forEach(item -> listed.add(item.get("id").asLong()));
+            cursor = page.headers().firstValue(CaseController.NEXT_CURSOR_HEADER).orElse(null);
+        } while (cursor != null);
+
+        HttpResponse<String> stream = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases/stream?" + encoded)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, stream.statusCode(), query);
+        List<Long> streamed = new ArrayList<>();
+        for (JsonNode item : objectMapper.readTree(stream.body())) {
+            streamed.add(item.get("id").asLong());
+        }
+
+        assertFalse(listed.isEmpty(), query);
+        assertEquals(listed, streamed, query);
+    }
+
+    // 値だけを符号化する（= と & はそのまま）
+    private static String encode(String query) {
+        StringBuilder encoded = new StringBuilder();
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (encoded.length() > 0) {
+                encoded.append('&');
+            }
+            encoded.append(parts[0]).append('=').append(URLEncoder.encode(parts[1], StandardCharsets.UTF_8));
+        }
+        return encoded.toString();
+    }
+}
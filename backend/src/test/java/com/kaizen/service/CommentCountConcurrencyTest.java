@@ -0,0 +1,68 @@
+package com.kaizen.service;
+
+import com.kaizen.benchmark.BenchmarkEnvironment;
+import com.kaizen.dto.CommentResponse;
+import com.kaizen.model.ImprovementCase;
+import com.kaizen.repository.ImprovementCaseRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事例の編集（エンティティを読んでから書き戻す）の途中でコメントが追加・削除されても、
+ * comment_count が comments の行数と一致することを確認する。
+ * 編集で comment_count を書き戻すと、読んだ後に加減算された分が失われる。
+ */
+class CommentCountConcurrencyTest {
+
+    private static final int CASE_COUNT = 200;
+
+    private static BenchmarkEnvironment environment;
+
+    @BeforeAll
+    static void start() throws Exception {
+        environment = BenchmarkEnvironment.get(CASE_COUNT);
+    }
+
+    @Test
+    void caseEditDoesNotOverwriteConcurrentCommentChanges() {
+        JdbcTemplate jdbcTemplate = environment.getBean(JdbcTemplate.class);
+        CommentService commentService = environment.getBean(CommentService.class);
+        ImprovementCaseRepository caseRepository = environment.getBean(ImprovementCaseRepository.class);
+        TransactionTemplate transactionTemplate =
+            new TransactionTemplate(environment.getBean(PlatformTransactionManager.class));
+        long caseId = jdbcTemplate.queryForObject("SELECT min(id) FROM improvement_cases", Long.class);
+        long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class,
+            BenchmarkEnvironment.USERNAME);
+        // 投入データの comment_count は comments の行と対応していないため、対象の事例は行数に合わせておく
+        jdbcTemplate.update("UPDATE improvement_cases SET comment_count = " +
+            "(SELECT count(*) FROM comments WHERE case_id = ?) WHERE id = ?", caseId, caseId);
+        CommentResponse existing = commentService.add(caseId, userId, BenchmarkEnvironment.USERNAME, "削除するコメント")
+            .orElseThrow();
+
+        // 事例を読んだ後、書き戻す前に別のトランザクションでコメントを追加・削除してコミットする
+        transactionTemplate.executeWithoutResult(status -> {
+            ImprovementCase improvementCase = caseRepository.findById(caseId).orElseThrow();
+            CompletableFuture.runAsync(() -> {
+                commentService.add(caseId, userId, BenchmarkEnvironment.USERNAME, "編集中のコメント 1");
+                commentService.add(caseId, userId, BenchmarkEnvironment.USERNAME, "編集中のコメント 2");
+                assertTrue(commentService.delete(caseId, existing.id(), userId));
+            }).join();
+            improvementCase.setTitle(improvementCase.getTitle() + "（編集）");
+            caseRepository.saveAndFlush(improvementCase);
+        });
+
+        int commentCount = jdbcTemplate.queryForObject(
+            "SELECT comment_count FROM improvement_cases WHERE id = ?", Integer.class, caseId);
+        int comments = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM comments WHERE case_id = ?", Integer.class, caseId);
+        assertEquals(comments, commentCount, "comment_count of case " + caseId);
+    }
+}
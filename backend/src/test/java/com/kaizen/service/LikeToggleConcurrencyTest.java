@@ -0,0 +1,136 @@
+package com.kaizen.service;
+
+import com.kaizen.benchmark.BenchmarkEnvironment;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 少数の事例に多数の利用者から並行していいねを付け外しし、like_count が likes の行数と一致することを確認する。
+ * 同じ利用者・事例の組の付け外しも同時に走らせ、最終的な状態が呼び出し回数の偶奇と一致することも確認する。
+ */
+class LikeToggleConcurrencyTest {
+
+    private static final int CASE_COUNT = 200;
+    private static final int USERS = 20;
+    private static final int CASES = 5;
+    private static final int TOGGLES = 2000;
+    private static final int CONCURRENCY = 32;
+
+    private static BenchmarkEnvironment environment;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeAll
+    static void start() throws Exception {
+        environment = BenchmarkEnvironment.get(CASE_COUNT);
+    }
+
+    @Test
+    void likeCountMatchesLikesUnderConcurrentToggles() throws Exception {
+        String baseUrl = "http://localhost:" + environment.getPort();
+        JdbcTemplate jdbcTemplate = environment.getBean(JdbcTemplate.class);
+        List<Long> caseIds = jdbcTemplate.queryForList(
+            "SELECT id FROM improvement_cases ORDER BY id LIMIT ?", Long.class, CASES);
+        // 投入データの like_count は likes の行と対応していないため、対象の事例は行数に合わせておく
+        for (Long caseId : caseIds) {
+            jdbcTemplate.update("UPDATE improvement_cases SET like_count = " +
+                "(SELECT count(*) FROM likes WHERE case_id = ?) WHERE id = ?", caseId, caseId);
+        }
+        List<String> tokens = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 1; i <= USERS; i++) {
+            String username = i == 1 ? BenchmarkEnvironment.USERNAME : "bench_user_" + i;
+            userIds.add(jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username));
+            tokens.add(login(baseUrl, username));
+        }
+        Map<String, Integer> before = likes(jdbcTemplate, caseIds, userIds);
+
+        AtomicIntegerArray toggles = new AtomicIntegerArray(USERS * CASES);
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < TOGGLES; i++) {
+                int user = i % USERS;
+                int target = (i / USERS) % CASES;
+                HttpRequest request = HttpRequest.newBuilder(URI.create(
+                        baseUrl + "/api/cases/" + caseIds.get(target) + "/like"))
+                    .header("Authorization", "Bearer " + tokens.get(user))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+                statuses.add(executor.submit(() -> {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    toggles.incrementAndGet(user * CASES + target);
+                    return status;
+                }));
+            }
+            for (Future<Integer> status : statuses) {
+                assertEquals(200, status.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("like toggles: %d requests, %d threads, %.1f s, %.0f toggles/s%n",
+            TOGGLES, CONCURRENCY, seconds, TOGGLES / seconds);
+
+        for (Long caseId : caseIds) {
+            Map<String, Object> counts = jdbcTemplate.queryForMap(
+                "SELECT c.like_count, (SELECT count(*) FROM likes l WHERE l.case_id = c.id) AS likes " +
+                "FROM improvement_cases c WHERE c.id = ?", caseId);
+            assertEquals(((Number) counts.get("likes")).intValue(), ((Number) counts.get("like_count")).intValue(),
+                "like_count of case " + caseId);
+        }
+        Map<String, Integer> after = likes(jdbcTemplate, caseIds, userIds);
+        for (int user = 0; user < USERS; user++) {
+            for (int target = 0; target < CASES; target++) {
+                String key = caseIds.get(target) + ":" + userIds.get(user);
+                int expected = (before.get(key) + toggles.get(user * CASES + target)) % 2;
+                assertEquals(expected, after.get(key), "like of " + key);
+            }
+        }
+    }
+
+    private String login(String baseUrl, String username) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"username\":\"" + username + "\",\"password\":\"" + BenchmarkEnvironment.PASSWORD + "\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return response.body().replaceAll("(?s).*\"token\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+    }
+
+    // 事例・利用者の組ごとのいいねの有無（1 か 0）
+    private static Map<String, Integer> likes(JdbcTemplate jdbcTemplate, List<Long> caseIds, List<Long> userIds) {
+        Map<String, Integer> likes = new HashMap<>();
+        for (Long caseId : caseIds) {
+            for (Long userId : userIds) {
+                likes.put(caseId + ":" + userId, 0);
+            }
+        }
+        jdbcTemplate.query("SELECT case_id, user_id FROM likes WHERE case_id = ANY(?)",
+            rs -> {
+                likes.computeIfPresent(rs.getLong(1) + ":" + rs.getLong(2), (key, value) -> 1);
+            },
+            (Object) caseIds.toArray(new Long[0]));
+        return likes;
+    }
+}
@@ -0,0 +1,280 @@
+package com.kaizen.sql;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kaizen.benchmark.BenchmarkEnvironment;
+import com.kaizen.storage.FileStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * すべてのエンドポイントを1回ずつ呼び出し、SQLの実行回数が @SqlBudget の予算内に収まることを確認する。
+ * テストは sql.budget.mode=fail で実行するため（pom.xml の surefire 設定）、予算を超えたリクエストは 500 になる。
+ * 応答のステータスも確認し、N+1 などでSQLが増えた変更や、呼び出しが途中で失敗して確認できていない経路を検出する。
+ */
+class SqlBudgetTest {
+
+    private static final int CASE_COUNT = 200;
+
+    private static BenchmarkEnvironment environment;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final List<String> failures = new ArrayList<>();
+    private String baseUrl;
+    private String token;
+
+    @BeforeAll
+    static void start() throws Exception {
+        environment = BenchmarkEnvironment.get(CASE_COUNT);
+    }
+
+    @Test
+    void allEndpointsStayWithinTheirBudgets() throws Exception {
+        baseUrl = "http://localhost:" + environment.getPort();
+        JdbcTemplate jdbcTemplate = environment.getBean(JdbcTemplate.class);
+        long caseId = jdbcTemplate.queryForObject("SELECT max(id) FROM improvement_cases", Long.class);
+        long otherCaseId = jdbcTemplate.queryForObject("SELECT min(id) FROM improvement_cases", Long.class);
+        Map<String, Object> department = jdbcTemplate.queryForMap(
+            "SELECT id, factory_id FROM departments ORDER BY id DESC LIMIT 1");
+        // 一括エクスポート・インポートの確認に管理者として実行する（ログイン時に利用者情報を読み直す）
+        jdbcTemplate.update("UPDATE users SET is_admin = true WHERE username = ?", BenchmarkEnvironment.USERNAME);
+
+        System.out.printf("%-44s %6s  %s%n", "request", "status", SqlBudgetGuard.HEADER);
+
+        HttpResponse<String> login = send("POST /api/auth/login", 200, postJson("/api/auth/login",
+            "{\"username\":\"" + BenchmarkEnvironment.USERNAME + "\",\"password\":\"" + BenchmarkEnvironment.PASSWORD + "\"}"));
+        token = login.body().replaceAll("(?s).*\"token\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+
+        send("GET /api/factories", 200, get("/api/factories"));
+        send("GET /api/departments", 200, get("/api/departments"));
+        send("GET /api/departments?factoryId", 200, get("/api/departments?factoryId=" + department.get("factory_id")));
+
+        HttpResponse<String> list = send("GET /api/cases", 200, get("/api/cases"));
+        send("GET /api/cases (not modified)", 304, ifNoneMatch(get("/api/cases"), list));
+        for (String sort : new String[]{"likes", "views"}) {
+            send("GET /api/cases?sortBy=" + sort, 200, get("/api/cases?sortBy=" + sort + "&limit=100"));
+        }
+        HttpResponse<String> firstPage = send("GET /api/cases?factoryId", 200, get("/api/cases?factoryId=" + department.get("factory_id")));
+        firstPage.headers().firstValue("X-Next-Cursor").ifPresent(cursor ->
+            send("GET /api/cases?cursor", 200, get("/api/cases?factoryId=" + department.get("factory_id") + "&cursor=" + cursor)));
+        send("GET /api/cases?keyword", 200, get("/api/cases?keyword=" + encode("段取り")));
+        send("GET /api/cases?keyword&sortBy=date", 200, get("/api/cases?sortBy=date&keyword=" + encode("治具")));
+        send("GET /api/cases/stream", 200, get("/api/cases/stream?factoryId=" + department.get("factory_id")));
+
+        subscribe("GET /api/cases/events", get("/api/cases/events"));
+        subscribe("GET /api/cases/{id}/events", get("/api/cases/" + caseId + "/events"));
+        HttpResponse<String> detail = send("GET /api/cases/{id}", 200, authorized(get("/api/cases/" + caseId)));
+        send("GET /api/cases/{id} (cached)", 200, authorized(get("/api/cases/" + caseId)));
+        send("GET /api/cases/{id} (not modified)", 304, ifNoneMatch(authorized(get("/api/cases/" + caseId)), detail));
+        send("GET /api/cases/{id} (anonymous)", 200, get("/api/cases/" + caseId));
+        send("GET /api/cases/{id} (missing)", 404, get("/api/cases/0"));
+        send("GET /api/cases/{id}/comments", 200, get("/api/cases/" + caseId + "/comments"));
+
+        send("POST /api/cases/{id}/like", 200, authorized(postForm("/api/cases/" + caseId + "/like", Map.of())));
+        send("POST /api/cases/{id}/like (undo)", 200, authorized(postForm("/api/cases/" + caseId + "/like", Map.of())));
+        send("POST /api/cases/{id}/comments", 200, authorized(postForm("/api/cases/" + caseId + "/comments",
+            Map.of("content", "SQL予算の確認"))));
+        HttpResponse<String> comment = send("POST /api/cases/{id}/comments (2nd)", 200, authorized(postForm(
+            "/api/cases/" + caseId + "/comments", Map.of("content", "SQL予算の確認（2件目）"))));
+        String commentId = comment.body().replaceAll("(?s).*?\"id\"\\s*:\\s*(\\d+).*", "$1");
+        HttpResponse<String> comments = send("GET /api/cases/{id}/comments?limit", 200,
+            get("/api/cases/" + caseId + "/comments?limit=1"));
+        comments.headers().firstValue("X-Next-Cursor").ifPresent(cursor ->
+            send("GET /api/cases/{id}/comments?cursor", 200, get("/api/cases/" + caseId + "/comments?limit=1&cursor=" + cursor)));
+        send("PUT /api/cases/{id}/comments/{commentId}", 200, authorized(put(
+            "/api/cases/" + caseId + "/comments/" + commentId, Map.of("content", "SQL予算の確認（編集）"))));
+        send("DELETE /api/cases/{id}/comments/{commentId}", 200, authorized(HttpRequest.newBuilder(
+            URI.create(baseUrl + "/api/cases/" + caseId + "/comments/" + commentId)).DELETE().build()));
+        send("DELETE /api/cases/{id}/comments/{commentId} (gone)", 404, authorized(HttpRequest.newBuilder(
+            URI.create(baseUrl + "/api/cases/" + caseId + "/comments/" + commentId)).DELETE().build()));
+        send("PUT /api/cases/{id}", 200, authorized(put("/api/cases/" + caseId, Map.of("title", "SQL予算の確認"))));
+        send("PUT /api/cases/{id} (move)", 200, authorized(put("/api/cases/" + otherCaseId, Map.of(
+            "factoryId", String.valueOf(department.get("factory_id")),
+            "departmentId", String.valueOf(department.get("id"))))));
+        HttpResponse<String> created = send("POST /api/cases", 200, authorized(upload(department, 3)));
+        String createdId = created.body().replaceAll("(?s).*?\"id\"\\s*:\\s*(\\d+).*", "$1");
+
+        // 投稿で FileStore に保存した実ファイルを配信する（全体・範囲指定・条件付き）
+        String imagePath = jdbcTemplate.queryForObject(
+            "SELECT thumbnail_path FROM case_images WHERE case_id = ? ORDER BY image_order LIMIT 1",
+            String.class, Long.valueOf(createdId));
+        HttpResponse<String> file = send("GET /uploads/**", 200, get(imagePath));
+        send("GET /uploads/** (range)", 206, HttpRequest.newBuilder(URI.create(baseUrl + imagePath))
+            .header("Range", "bytes=0-99").GET().build());
+        send("GET /uploads/** (not modified)", 304, ifNoneMatch(get(imagePath), file));
+
+        send("DELETE /api/cases/{id}", 200, authorized(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases/" + createdId)).DELETE().build()));
+
+        send("GET /api/summary/top-views", 200, get("/api/summary/top-views"));
+        send("GET /api/summary/statistics", 200, get("/api/summary/statistics"));
+
+        String username = "budget_" + UUID.randomUUID().toString().substring(0, 8);
+        send("POST /api/auth/register", 200, postJson("/api/auth/register",
+            "{\"username\":\"" + username + "\",\"password\":\"budget_password\",\"email\":\"" + username + "@example.com\"}"));
+
+        HttpResponse<String> export = send("GET /api/admin/cases/export", 200, authorized(
+            get("/api/admin/cases/export?factoryId=" + department.get("factory_id"))));
+        // 投入データの画像パスにはファイルがないため、取り込む行は保存済みのファイルを指すよう書き換える
+        ObjectNode row = (ObjectNode) new ObjectMapper().readTree(export.body().lines().findFirst().orElseThrow());
+        byte[] importedImage = createImage(9);
+        row.putArray("images").add(environment.getBean(FileStore.class).store(".jpg", out -> out.write(importedImage)));
+        row.remove(List.of("mediumImages", "thumbnails"));
+        HttpResponse<String> imported = send("POST /api/admin/cases/import", 200, authorized(HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/cases/import"))
+            .header("Content-Type", "application/x-ndjson")
+            .POST(HttpRequest.BodyPublishers.ofString(row.toString()))
+            .build()));
+        assertTrue(imported.body().contains("\"imported\":1"), imported.body());
+
+        assertTrue(failures.isEmpty(), () -> "Failed requests:\n  " + String.join("\n  ", failures));
+    }
+
+    private HttpResponse<String> send(String name, int expectedStatus, HttpRequest request) {
+        HttpResponse<String> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new IllegalStateException(name + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(name + " interrupted", e);
+        }
+        String statistics = response.headers().firstValue(SqlBudgetGuard.HEADER).orElse("-");
+        System.out.printf("%-44s %6d  %s%n", name, response.statusCode(), statistics);
+        if (response.statusCode() != expectedStatus) {
+            failures.add(name + " -> " + response.statusCode() + " " + response.body());
+        }
+        return response;
+    }
+
+    // Server-Sent Events は終わらないため、応答ヘッダーを受け取った時点で切断する
+    private void subscribe(String name, HttpRequest request) {
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            response.body().close();
+        } catch (IOException e) {
+            throw new IllegalStateException(name + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(name + " interrupted", e);
+        }
+        System.out.printf("%-44s %6d  %s%n", name, response.statusCode(), "-");
+        if (response.statusCode() != 200) {
+            failures.add(name + " -> " + response.statusCode());
+        }
+    }
+
+    private HttpRequest ifNoneMatch(HttpRequest request, HttpResponse<?> previous) {
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+            .header("If-None-Match", previous.headers().firstValue("ETag").orElseThrow())
+            .build();
+    }
+
+    private HttpRequest authorized(HttpRequest request) {
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+            .header("Authorization", "Bearer " + token)
+            .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest postForm(String path, Map<String, String> form) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(formBody(form)))
+            .build();
+    }
+
+    private HttpRequest put(String path, Map<String, String> form) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path + "?" + formBody(form)))
+            .PUT(HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+
+    private HttpRequest postJson(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .build();
+    }
+
+    private HttpRequest upload(Map<String, Object> department, int imageCount) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("title", "SQL予算の確認");
+        fields.put("description", "投稿時のSQLの実行回数を確認する。");
+        fields.put("factoryId", String.valueOf(department.get("factory_id")));
+        fields.put("departmentId", String.valueOf(department.get("id")));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        fields.forEach((name, value) -> write(body, "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n"));
+        for (int i = 0; i < imageCount; i++) {
+            write(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"images\"; filename=\"photo" + i + ".jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n");
+            body.writeBytes(createImage(i));
+            write(body, "\r\n");
+        }
+        write(body, "--" + boundary + "--\r\n");
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/cases"))
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+            .build();
+    }
+
+    private static byte[] createImage(int seed) throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, ((x + y + seed * 40) & 0xFF) * 0x010101);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static String formBody(Map<String, String> form) {
+        StringBuilder body = new StringBuilder();
+        form.forEach((key, value) -> {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(encode(key)).append('=').append(encode(value));
+        });
+        return body.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
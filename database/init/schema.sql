@@ -30,6 +30,9 @@ CREATE TABLE IF NOT EXISTS departments (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 部分一致検索用（日本語を含むキーワード検索をGINインデックスで行う）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- 改善事例テーブル
 CREATE TABLE IF NOT EXISTS improvement_cases (
     id BIGSERIAL PRIMARY KEY,
@@ -50,6 +53,8 @@ CREATE TABLE IF NOT EXISTS case_images (
     id BIGSERIAL PRIMARY KEY,
     case_id BIGINT REFERENCES improvement_cases(id) ON DELETE CASCADE,
     image_path VARCHAR(500) NOT NULL,
+    medium_path VARCHAR(500),
+    thumbnail_path VARCHAR(500),
     image_order INTEGER DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -83,6 +88,65 @@ CREATE TABLE IF NOT EXISTS view_logs (
     UNIQUE(case_id, user_id, viewed_date)
 );
 
+-- 月別閲覧数集計テーブル（今月のTOP閲覧記事用）
+CREATE TABLE IF NOT EXISTS case_monthly_views (
+    case_id BIGINT REFERENCES improvement_cases(id) ON DELETE CASCADE,
+    view_month DATE NOT NULL,
+    view_count INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (case_id, view_month)
+);
+
+-- 統計集計テーブル（工場・係・投稿月ごと）
+CREATE TABLE IF NOT EXISTS case_statistics (
+    factory_id BIGINT REFERENCES factories(id) ON DELETE CASCADE,
+    department_id BIGINT REFERENCES departments(id) ON DELETE CASCADE,
+    stat_month DATE NOT NULL,
+    post_count BIGINT NOT NULL DEFAULT 0,
+    view_count BIGINT NOT NULL DEFAULT 0,
+    like_count BIGINT NOT NULL DEFAULT 0,
+    comment_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (factory_id, department_id, stat_month)
+);
+
+-- アップロードファイルの参照数（内容アドレスで同じ内容のファイルを共有する）
+CREATE TABLE IF NOT EXISTS stored_files (
+    path VARCHAR(500) PRIMARY KEY,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    size_bytes BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- キーワード検索用の語の集合（1文字・2文字）。pg_trgm は3文字未満のキーワード（改善・治具など）から、ロケールによっては
+-- 日本語の文字からもトライグラムを取り出せないため、この集合で候補を絞ってから LIKE で確認する。
+-- 2文字の語は文書を2文字ずつ区切ったもの（先頭から・2文字目から）で、行ごとの SQL の繰り返しを避けるため重複は残す
+CREATE OR REPLACE FUNCTION search_bigrams(doc text) RETURNS text[]
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE AS $$
+    SELECT array_remove(string_to_array(doc, NULL)
+        || regexp_split_to_array(regexp_replace(doc, '(..)', '\1' || chr(1), 'g'), chr(1))
+        || regexp_split_to_array(regexp_replace(substr(doc, 2), '(..)', '\1' || chr(1), 'g'), chr(1)), '')
+$$;
+-- キーワードの2文字の語（1文字のキーワードはその文字）をすべて含む文書が候補になる
+CREATE OR REPLACE FUNCTION search_keyword_bigrams(keyword text) RETURNS text[]
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE AS $$
+    SELECT CASE WHEN length(keyword) < 2 THEN ARRAY[keyword]
+                ELSE ARRAY(SELECT DISTINCT substr(keyword, i, 2) FROM generate_series(1, length(keyword) - 1) i) END
+$$;
+-- 呼び出し側では search_grams @> ... に展開されるため、search_grams の GIN インデックスを使う
+CREATE OR REPLACE FUNCTION search_matches(grams text[], keyword text) RETURNS boolean
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE AS $$
+    SELECT grams @> search_keyword_bigrams(keyword)
+$$;
+
+-- 既存環境向けのカラム追加
+-- 検索のたびに語の集合を作らないよう、登録・更新時に一度だけ計算して保持する
+ALTER TABLE improvement_cases ADD COLUMN IF NOT EXISTS search_grams TEXT[]
+    GENERATED ALWAYS AS (search_bigrams(title || E'\n' || description)) STORED;
+ALTER TABLE case_images ADD COLUMN IF NOT EXISTS medium_path VARCHAR(500);
+ALTER TABLE case_images ADD COLUMN IF NOT EXISTS thumbnail_path VARCHAR(500);
+
+-- 画像IDはアプリケーションが50件単位で採番する（CaseImage の allocationSize と合わせる）
+ALTER SEQUENCE case_images_id_seq INCREMENT BY 50;
+
 -- インデックスの作成
 CREATE INDEX IF NOT EXISTS idx_improvement_cases_factory_id ON improvement_cases(factory_id);
 CREATE INDEX IF NOT EXISTS idx_improvement_cases_department_id ON improvement_cases(department_id);
@@ -90,11 +154,40 @@ CREATE INDEX IF NOT EXISTS idx_improvement_cases_user_id ON improvement_cases(us
 CREATE INDEX IF NOT EXISTS idx_improvement_cases_created_at ON improvement_cases(created_at);
 CREATE INDEX IF NOT EXISTS idx_improvement_cases_view_count ON improvement_cases(view_count);
 CREATE INDEX IF NOT EXISTS idx_improvement_cases_like_count ON improvement_cases(like_count);
+-- 一覧のキーセットページネーション用（ソートキー, id）
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_created_at_id ON improvement_cases(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_like_count_id ON improvement_cases(like_count DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_view_count_id ON improvement_cases(view_count DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_factory_created_at_id ON improvement_cases(factory_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_department_created_at_id ON improvement_cases(department_id, created_at DESC, id DESC);
+-- キーワード検索用（pg_trgm）
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_title_trgm ON improvement_cases USING gin (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_description_trgm ON improvement_cases USING gin (description gin_trgm_ops);
+-- キーワード検索用（1文字・2文字の語。search_grams 列）
+CREATE INDEX IF NOT EXISTS idx_improvement_cases_search_grams ON improvement_cases USING gin (search_grams);
+CREATE INDEX IF NOT EXISTS idx_case_images_case_id_order ON case_images(case_id, image_order);
 CREATE INDEX IF NOT EXISTS idx_likes_case_id ON likes(case_id);
 CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes(user_id);
-CREATE INDEX IF NOT EXISTS idx_comments_case_id ON comments(case_id);
+-- コメント一覧のキーセットページネーション用（投稿日時順）
+CREATE INDEX IF NOT EXISTS idx_comments_case_created_at_id ON comments(case_id, created_at, id);
 CREATE INDEX IF NOT EXISTS idx_view_logs_case_id ON view_logs(case_id);
 CREATE INDEX IF NOT EXISTS idx_view_logs_viewed_date ON view_logs(viewed_date);
+CREATE INDEX IF NOT EXISTS idx_case_monthly_views_month_count ON case_monthly_views(view_month, view_count DESC, case_id DESC);
+
+-- 既存の閲覧ログから月別閲覧数を作成
+INSERT INTO case_monthly_views (case_id, view_month, view_count)
+SELECT case_id, date_trunc('month', viewed_date)::date, count(*)
+FROM view_logs
+GROUP BY case_id, date_trunc('month', viewed_date)::date
+ON CONFLICT (case_id, view_month) DO NOTHING;
+
+-- 既存の事例から統計集計を作成（再計算は --rebuild-statistics で起動）
+INSERT INTO case_statistics (factory_id, department_id, stat_month, post_count, view_count, like_count, comment_count)
+SELECT factory_id, department_id, CAST(date_trunc('month', created_at) AS date), count(*),
+       COALESCE(sum(view_count), 0), COALESCE(sum(like_count), 0), COALESCE(sum(comment_count), 0)
+FROM improvement_cases
+GROUP BY factory_id, department_id, CAST(date_trunc('month', created_at) AS date)
+ON CONFLICT (factory_id, department_id, stat_month) DO NOTHING;
 
 -- 初期データの投入（管理者ユーザー）
 INSERT INTO users (username, password, email, is_admin) 
@@ -0,0 +1,5 @@
+#!/bin/sh
+# 読み取りレプリカ（docker-compose.replica.yml）を使う場合だけ、ネットワーク越しのレプリケーション接続を許可する
+if [ "$ALLOW_REPLICATION" = "true" ]; then
+    echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
+fi
@@ -1,11 +1,16 @@
 // APIベースURL（相対パスを使用してnginxプロキシ経由でアクセス）
 const API_BASE = '/api';
+// ライブ更新の接続が閉じられた場合に接続し直すまでの時間
+const LIVE_RETRY_MS = 30000;
 
 // アプリケーション状態
 let currentUser = null;
 let factories = [];
 let departments = [];
 let currentView = 'home';
+let nextCursor = null;
+let commentsCursor = null;
+let liveEvents = null;
 
 // 初期化
 document.addEventListener('DOMContentLoaded', () => {
@@ -71,6 +76,10 @@ function setupEventListeners() {
         if (loginForm) loginForm.addEventListener('submit', handleLogin);
         if (postForm) postForm.addEventListener('submit', handlePost);
         if (commentForm) commentForm.addEventListener('submit', handleComment);
+        const loadMoreCommentsBtn = document.getElementById('loadMoreCommentsBtn');
+        if (loadMoreCommentsBtn) {
+            loadMoreCommentsBtn.addEventListener('click', () => loadComments(window.currentCaseId, true));
+        }
 
         // フィルター
         const factoryFilter = document.getElementById('factoryFilter');
@@ -81,6 +90,10 @@ function setupEventListeners() {
         if (searchInput) searchInput.addEventListener('input', debounce(loadCases, 300));
         if (sortSelect) sortSelect.addEventListener('change', loadCases);
 
+        // もっと見る
+        const loadMoreBtn = document.getElementById('loadMoreBtn');
+        if (loadMoreBtn) loadMoreBtn.addEventListener('click', loadMoreCases);
+
         // 画像プレビュー
         const postImages = document.getElementById('postImages');
         if (postImages) postImages.addEventListener('change', handleImagePreview);
@@ -95,12 +108,14 @@ function showView(viewName) {
     document.querySelectorAll('.nav-btn').forEach(btn => btn.classList.remove('active'));
     
     currentView = viewName;
+    closeLiveEvents();
     
     switch(viewName) {
         case 'home':
             document.getElementById('homeView').classList.remove('hidden');
             document.getElementById('homeBtn').classList.add('active');
             loadCases();
+            openLiveEvents(`${API_BASE}/cases/events`, applyCaseCounters, () => loadCases());
             break;
         case 'post':
             if (!currentUser) {
@@ -122,6 +137,83 @@ function showView(viewName) {
     }
 }
 
+// ライブ更新（Server-Sent Events）。切断時は EventSource が自動で再接続し、
+// 切断中の変更は受け取れないため再接続時に onReconnect で取り直す
+function openLiveEvents(url, onUpdate, onReconnect) {
+    closeLiveEvents();
+    const source = new EventSource(url);
+    let connected = false;
+    source.addEventListener('open', () => {
+        if (connected) onReconnect();
+        connected = true;
+    });
+    source.addEventListener('update', (e) => JSON.parse(e.data).forEach(onUpdate));
+    source.addEventListener('error', () => {
+        // 503（接続数の上限）などで閉じられた場合は自動で再接続されないため、時間を置いて接続し直す
+        if (source.readyState === EventSource.CLOSED && liveEvents === source) {
+            setTimeout(() => {
+                if (liveEvents === source) {
+                    openLiveEvents(url, onUpdate, onReconnect);
+                    onReconnect();
+                }
+            }, LIVE_RETRY_MS);
+        }
+    });
+    liveEvents = source;
+}
+
+function closeLiveEvents() {
+    if (liveEvents) {
+        liveEvents.close();
+        liveEvents = null;
+    }
+}
+
+function isLive() {
+    return liveEvents !== null && liveEvents.readyState === EventSource.OPEN;
+}
+
+// 表示中の件数に差分を加える
+function addToCount(element, delta) {
+    if (element && delta) {
+        element.textContent = Number(element.textContent) + delta;
+    }
+}
+
+// 一覧の事例カードの件数を更新する
+function applyCaseCounters(activity) {
+    const card = document.querySelector(`.case-card[data-case-id="${activity.caseId}"]`);
+    if (!card) return;
+    addToCount(card.querySelector('.view-count'), activity.views);
+    addToCount(card.querySelector('.like-count'), activity.likes);
+    addToCount(card.querySelector('.comment-count'), activity.comments);
+}
+
+// 詳細画面のいいね数とコメントを更新する
+function applyCaseActivity(activity) {
+    if (activity.caseId !== window.currentCaseId) return;
+    addToCount(document.getElementById('likeCount'), activity.likes);
+    if (activity.reload) {
+        loadComments(activity.caseId);
+        return;
+    }
+    (activity.upsertedComments || []).forEach(upsertComment);
+    (activity.deletedComments || []).forEach(id => {
+        const item = document.getElementById(`comment-${id}`);
+        if (item) item.remove();
+    });
+}
+
+// コメントを表示に反映する。新しいコメントは最後のページまで表示している場合だけ末尾に追加する
+function upsertComment(comment) {
+    const item = document.getElementById(`comment-${comment.id}`);
+    if (item) {
+        item.outerHTML = renderComment(comment);
+    } else if (!commentsCursor) {
+        document.getElementById('commentsList').insertAdjacentHTML('beforeend', renderComment(comment));
+    }
+}
+
 // ログインモーダル
 function showLoginModal() {
     document.getElementById('loginModal').classList.add('show');
@@ -145,6 +237,8 @@ async function handleLogin(e) {
             updateAuthUI();
             document.getElementById('loginModal').classList.remove('show');
             document.getElementById('loginForm').reset();
+        } else if (response.status === 503) {
+            alert('ログインが混み合っています。少し待ってから再度お試しください');
         } else {
             alert('ログインに失敗しました');
         }
@@ -169,6 +263,11 @@ function updateAuthUI() {
     }
 }
 
+// 認証ヘッダー（ログイン時に受け取ったアクセストークン）
+function authHeaders() {
+    return currentUser ? { 'Authorization': `Bearer ${currentUser.token}` } : {};
+}
+
 // ログアウト
 function handleLogout() {
     currentUser = null;
@@ -283,8 +382,9 @@ function handleFactoryFilter() {
     loadCases();
 }
 
-// ケース読み込み
-async function loadCases() {
+// ケース読み込み（append === true の場合は次ページを追加読み込み）
+async function loadCases(append) {
+    const isAppend = append === true;
     const factoryId = document.getElementById('factoryFilter')?.value || '';
     const departmentId = document.getElementById('departmentFilter')?.value || '';
     const keyword = document.getElementById('searchInput')?.value || '';
@@ -295,6 +395,7 @@ async function loadCases() {
     if (departmentId) url += `departmentId=${departmentId}&`;
     if (keyword) url += `keyword=${encodeURIComponent(keyword)}&`;
     if (sortBy) url += `sortBy=${sortBy}&`;
+    if (isAppend && nextCursor) url += `cursor=${encodeURIComponent(nextCursor)}&`;
 
     try {
         const controller = new AbortController();
@@ -318,7 +419,8 @@ async function loadCases() {
             throw new Error(`HTTP error! status: ${response.status}`);
         }
         const cases = await response.json();
-        displayCases(cases);
+        nextCursor = response.headers.get('X-Next-Cursor');
+        displayCases(cases, isAppend);
     } catch (error) {
         if (error.name === 'AbortError') {
             const casesList = document.getElementById('casesList');
@@ -336,18 +438,27 @@ async function loadCases() {
     }
 }
 
+// 次ページ読み込み
+function loadMoreCases() {
+    loadCases(true);
+}
+
 // ケース表示
-function displayCases(cases) {
+function displayCases(cases, append) {
     const casesList = document.getElementById('casesList');
+    const loadMoreBtn = document.getElementById('loadMoreBtn');
+    if (loadMoreBtn) {
+        loadMoreBtn.classList.toggle('hidden', !nextCursor);
+    }
     
-    if (cases.length === 0) {
+    if (!append && cases.length === 0) {
         casesList.innerHTML = '<div class="loading">改善事例がありません</div>';
         return;
     }
 
-    casesList.innerHTML = cases.map(caseItem => `
-        <div class="case-card" onclick="showCaseDetail(${caseItem.id})">
-            <img src="${caseItem.images[0] || '/uploads/default.jpg'}" 
+    const html = cases.map(caseItem => `
+        <div class="case-card" data-case-id="${caseItem.id}" onclick="showCaseDetail(${caseItem.id})">
+            <img src="${(caseItem.thumbnails && caseItem.thumbnails[0]) || caseItem.images[0] || '/uploads/default.jpg'}" 
                  alt="${caseItem.title}" 
                  class="case-image"
                  onerror="this.src='data:image/svg+xml,%3Csvg xmlns=\'http://www.w3.org/2000/svg\' width=\'300\' height=\'200\'%3E%3Crect fill=\'%23f0f0f0\' width=\'300\' height=\'200\'/%3E%3Ctext x=\'50%25\' y=\'50%25\' text-anchor=\'middle\' dy=\'.3em\' fill=\'%23999\'%3E画像なし%3C/text%3E%3C/svg%3E'">
@@ -359,21 +470,25 @@ function displayCases(cases) {
                     <span>${formatDate(caseItem.createdAt)}</span>
                 </div>
                 <div class="case-stats">
-                    <div class="stat-item">👁️ ${caseItem.viewCount}</div>
-                    <div class="stat-item">❤️ ${caseItem.likeCount}</div>
-                    <div class="stat-item">💬 ${caseItem.commentCount}</div>
+                    <div class="stat-item">👁️ <span class="view-count">${caseItem.viewCount}</span></div>
+                    <div class="stat-item">❤️ <span class="like-count">${caseItem.likeCount}</span></div>
+                    <div class="stat-item">💬 <span class="comment-count">${caseItem.commentCount}</span></div>
                 </div>
             </div>
         </div>
     `).join('');
+
+    if (append) {
+        casesList.insertAdjacentHTML('beforeend', html);
+    } else {
+        casesList.innerHTML = html;
+    }
 }
 
 // ケース詳細表示（グローバルスコープに公開）
 window.showCaseDetail = async function(caseId) {
     try {
-        const userId = currentUser ? currentUser.id : null;
-        const url = userId ? `${API_BASE}/cases/${caseId}?userId=${userId}` : `${API_BASE}/cases/${caseId}`;
-        const response = await fetch(url);
+        const response = await fetch(`${API_BASE}/cases/${caseId}`, { headers: authHeaders() });
         
         if (!response.ok) {
             throw new Error(`HTTP error! status: ${response.status}`);
@@ -400,7 +515,7 @@ window.showCaseDetail = async function(caseId) {
             </div>
             <div class="case-stats" style="margin-top: 1rem;">
                 <button class="btn btn-primary" onclick="toggleLike(${caseData.id})">
-                    ❤️ いいね (${caseData.likeCount})
+                    ❤️ いいね (<span id="likeCount">${caseData.likeCount}</span>)
                 </button>
             </div>
         `;
@@ -408,6 +523,7 @@ window.showCaseDetail = async function(caseId) {
         await loadComments(caseId);
         showView('detail');
         window.currentCaseId = caseId;
+        openLiveEvents(`${API_BASE}/cases/${caseId}/events`, applyCaseActivity, () => showCaseDetail(caseId));
     } catch (error) {
         console.error('Error loading case detail:', error);
         alert('詳細の読み込みに失敗しました: ' + error.message);
@@ -422,17 +538,17 @@ window.toggleLike = async function(caseId) {
     }
 
     try {
-        const formData = new FormData();
-        formData.append('userId', currentUser.id);
-
         const response = await fetch(`${API_BASE}/cases/${caseId}/like`, {
             method: 'POST',
-            body: formData
+            headers: authHeaders()
         });
 
         if (response.ok) {
             const data = await response.json();
-            window.showCaseDetail(caseId);
+            // 接続中はライブ更新で件数が届く（ここで書き換えると二重に加算される）
+            if (!isLive()) {
+                document.getElementById('likeCount').textContent = data.likeCount;
+            }
         } else {
             throw new Error(`HTTP error! status: ${response.status}`);
         }
@@ -442,27 +558,96 @@ window.toggleLike = async function(caseId) {
     }
 }
 
-// コメント読み込み
-async function loadComments(caseId) {
+// コメント読み込み（append で次ページを追加）
+async function loadComments(caseId, append) {
+    const isAppend = append === true;
+    let url = `${API_BASE}/cases/${caseId}/comments`;
+    if (isAppend && commentsCursor) url += `?cursor=${encodeURIComponent(commentsCursor)}`;
+
     try {
-        const response = await fetch(`${API_BASE}/cases/${caseId}/comments`);
+        const response = await fetch(url);
         const comments = await response.json();
-        
+        commentsCursor = response.headers.get('X-Next-Cursor');
+        document.getElementById('loadMoreCommentsBtn').classList.toggle('hidden', !commentsCursor);
+
         const commentsList = document.getElementById('commentsList');
-        commentsList.innerHTML = comments.map(comment => `
-            <div class="comment-item">
-                <div class="comment-header">
-                    <span class="comment-author">${escapeHtml(comment.username)}</span>
-                    <span class="comment-date">${formatDate(comment.createdAt)}</span>
-                </div>
-                <div class="comment-content">${escapeHtml(comment.content).replace(/\n/g, '<br>')}</div>
-            </div>
-        `).join('');
+        const html = comments.map(renderComment).join('');
+        if (isAppend) {
+            commentsList.insertAdjacentHTML('beforeend', html);
+        } else {
+            commentsList.innerHTML = html;
+        }
     } catch (error) {
         console.error('Error loading comments:', error);
     }
 }
 
+// コメント1件の表示（本人のコメントには編集・削除ボタンを付ける）
+function renderComment(comment) {
+    const own = currentUser && currentUser.id === comment.userId;
+    return `
+        <div class="comment-item" id="comment-${comment.id}">
+            <div class="comment-header">
+                <span class="comment-author">${escapeHtml(comment.username)}</span>
+                <span class="comment-date">${formatDate(comment.createdAt)}</span>
+            </div>
+            <div class="comment-content">${escapeHtml(comment.content).replace(/\n/g, '<br>')}</div>
+            ${own ? `
+            <div class="comment-actions">
+                <button class="btn btn-secondary" onclick="editComment(${comment.id})">編集</button>
+                <button class="btn btn-secondary" onclick="deleteComment(${comment.id})">削除</button>
+            </div>` : ''}
+        </div>
+    `;
+}
+
+// コメント編集（グローバルスコープに公開）
+window.editComment = async function(commentId) {
+    const item = document.getElementById(`comment-${commentId}`);
+    const contentDiv = item.querySelector('.comment-content');
+    const content = prompt('コメントを編集', contentDiv.innerText);
+    if (content === null || content.trim() === '') {
+        return;
+    }
+
+    try {
+        const response = await fetch(`${API_BASE}/cases/${window.currentCaseId}/comments/${commentId}`, {
+            method: 'PUT',
+            headers: { ...authHeaders(), 'Content-Type': 'application/x-www-form-urlencoded' },
+            body: new URLSearchParams({ content })
+        });
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+        const comment = await response.json();
+        contentDiv.innerHTML = escapeHtml(comment.content).replace(/\n/g, '<br>');
+    } catch (error) {
+        console.error('Error editing comment:', error);
+        alert('コメントの編集に失敗しました: ' + error.message);
+    }
+}
+
+// コメント削除（グローバルスコープに公開）
+window.deleteComment = async function(commentId) {
+    if (!confirm('このコメントを削除しますか？')) {
+        return;
+    }
+
+    try {
+        const response = await fetch(`${API_BASE}/cases/${window.currentCaseId}/comments/${commentId}`, {
+            method: 'DELETE',
+            headers: authHeaders()
+        });
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+        document.getElementById(`comment-${commentId}`).remove();
+    } catch (error) {
+        console.error('Error deleting comment:', error);
+        alert('コメントの削除に失敗しました: ' + error.message);
+    }
+}
+
 // コメント投稿
 async function handleComment(e) {
     e.preventDefault();
@@ -478,17 +663,16 @@ async function handleComment(e) {
     try {
         const formData = new FormData();
         formData.append('content', content);
-        formData.append('userId', currentUser.id);
 
         const response = await fetch(`${API_BASE}/cases/${caseId}/comments`, {
             method: 'POST',
+            headers: authHeaders(),
             body: formData
         });
 
         if (response.ok) {
             document.getElementById('commentContent').value = '';
-            await loadComments(caseId);
-            await showCaseDetail(caseId);
+            upsertComment(await response.json());
         }
     } catch (error) {
         console.error('Error posting comment:', error);
@@ -509,7 +693,6 @@ async function handlePost(e) {
     formData.append('description', document.getElementById('postDescription').value);
     formData.append('factoryId', document.getElementById('postFactory').value);
     formData.append('departmentId', document.getElementById('postDepartment').value);
-    formData.append('userId', currentUser.id);
 
     const images = document.getElementById('postImages').files;
     for (let i = 0; i < images.length && i < 10; i++) {
@@ -519,6 +702,7 @@ async function handlePost(e) {
     try {
         const response = await fetch(`${API_BASE}/cases`, {
             method: 'POST',
+            headers: authHeaders(),
             body: formData
         });
 